@@ -0,0 +1,98 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.JobBatch;
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Jobs arriving in bursts, as from a network decoder: {@value #BATCH} jobs over uniformly spread job ids submitted
+ * one by one versus at once with {@code submitAll}. Scores are per job.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchSubmitBenchmark {
+
+    static final int BATCH = 256;
+
+    @Param({Pools.AFFINITY, Pools.SERIAL_PER_KEY})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    @Param({"1024"})
+    int keyCount;
+
+    ThreadPoolWithJobAffinity pool;
+    String[] jobIds;
+    int[] sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        jobIds = Keys.jobIds(keyCount);
+        sequence = Keys.sequence(Keys.UNIFORM, keyCount, 1 << 16, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Per producer thread batch, reused across invocations.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+        final JobBatch jobs = new JobBatch(BATCH);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void submitEach(Producer producer) {
+        producer.awaitWindow(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            pool.submit(jobIds[sequence[producer.next++ & (sequence.length - 1)]], producer.job);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void submitAll(Producer producer, Batch batch) {
+        producer.awaitWindow(BATCH);
+        JobBatch jobs = batch.jobs;
+        jobs.clear();
+        for (int i = 0; i < BATCH; i++) {
+            jobs.add(jobIds[sequence[producer.next++ & (sequence.length - 1)]], producer.job);
+        }
+        pool.submitAll(jobs);
+    }
+}
@@ -0,0 +1,111 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Head-of-line blocking: latency of a short job while other job ids run jobs blocking for {@code blockMicros},
+ * as if waiting on I/O. In the lane model a short job queued behind a blocking job of another job id sharing its
+ * lane waits for it; with a thread per job id it does not, and with serial queues on a ForkJoinPool it waits only
+ * while every worker is blocked. Run on Java 21 or later for virtual threads.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockingJobBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.ACTOR_PER_KEY, Pools.SERIAL_PER_KEY})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    @Param({"1000"})
+    int blockMicros;
+
+    /**
+     * Maximum number of blocking jobs queued or running at any time.
+     */
+    @Param({"64"})
+    int blockingInFlight;
+
+    ThreadPoolWithJobAffinity pool;
+    String[] blockingJobIds;
+    String[] shortJobIds;
+    AtomicInteger inFlight;
+    Runnable blockingJob;
+    Runnable shortJob;
+    volatile long done;
+    long expected;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        blockingJobIds = new String[1024];
+        shortJobIds = new String[1024];
+        for (int i = 0; i < 1024; i++) {
+            blockingJobIds[i] = "IO-" + i;
+            shortJobIds[i] = "FAST-" + i;
+        }
+        inFlight = new AtomicInteger();
+        blockingJob = new Runnable() {
+            @Override
+            public void run() {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockMicros));
+                inFlight.decrementAndGet();
+            }
+        };
+        shortJob = new Runnable() {
+            @Override
+            public void run() {
+                done++;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long shortJobLatency() {
+        int i = next++ & 1023;
+        if (inFlight.get() < blockingInFlight) {
+            inFlight.incrementAndGet();
+            pool.submit(blockingJobIds[i], blockingJob);
+        }
+        expected++;
+        pool.submit(shortJobIds[i], shortJob);
+        while (done != expected) {
+            //spin, the thread of the short job id is the only writer of done
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,75 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Round trip of a single job through an otherwise idle lane: submit, wake the lane thread, run, observe.
+ * Sampled so that the percentiles of the handoff latency are reported, including the cost of waking a parked lane.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandoffLatencyBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.AFFINITY_SPIN_THEN_PARK, Pools.ACTOR_PER_KEY, Pools.SERIAL_PER_KEY,
+            Pools.THREAD_POOL_EXECUTOR, Pools.SINGLE_THREAD_EXECUTOR_PER_KEY})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    ThreadPoolWithJobAffinity pool;
+    volatile long done;
+    long expected;
+    Runnable job;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        job = new Runnable() {
+            @Override
+            public void run() {
+                done++;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long roundTrip() {
+        expected++;
+        pool.submit("ORDER-1001", job);
+        while (done != expected) {
+            //spin, the lane thread is the only writer of done
+        }
+        return expected;
+    }
+}
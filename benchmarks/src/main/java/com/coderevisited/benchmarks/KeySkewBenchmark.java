@@ -0,0 +1,88 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Throughput of jobs doing a fixed amount of work when job ids are uniformly spread or Zipfian skewed.
+ * With skew, the lanes owning the hottest keys become the bottleneck, which the shared queue baseline does not have.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class KeySkewBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.AFFINITY_MIXED_HASH, Pools.ACTOR_PER_KEY, Pools.SERIAL_PER_KEY, Pools.THREAD_POOL_EXECUTOR,
+            Pools.SINGLE_THREAD_EXECUTOR_PER_KEY})
+    String implementation;
+
+    @Param({Keys.UNIFORM, Keys.ZIPFIAN})
+    String distribution;
+
+    @Param({"8"})
+    int poolSize;
+
+    @Param({"10000"})
+    int keyCount;
+
+    /**
+     * Work done by every job, in Blackhole tokens.
+     */
+    @Param({"200"})
+    int jobTokens;
+
+    ThreadPoolWithJobAffinity pool;
+    String[] jobIds;
+    int[] sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        jobIds = Keys.jobIds(keyCount);
+        sequence = Keys.sequence(distribution, keyCount, 1 << 16, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void submit(final Producer producer) {
+        producer.awaitWindow();
+        int key = sequence[producer.next++ & (sequence.length - 1)];
+        pool.submit(jobIds[key], new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(jobTokens);
+                producer.job.run();
+            }
+        });
+    }
+}
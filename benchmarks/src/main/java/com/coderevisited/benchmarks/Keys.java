@@ -0,0 +1,91 @@
+package com.coderevisited.benchmarks;
+
+import java.util.Random;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Pre-computed job id sequences, so that choosing the next job id costs nothing inside a measured operation.
+ */
+final class Keys {
+
+    static final String UNIFORM = "uniform";
+    static final String ZIPFIAN = "zipfian";
+
+    /**
+     * Skew of the Zipfian distribution, the value YCSB uses for its hot-spot workloads.
+     */
+    static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private Keys() {
+    }
+
+    /**
+     * @param keyCount number of distinct job ids
+     * @return job ids shaped like the order ids seen in production, ORDER-1000 onwards
+     */
+    static String[] jobIds(int keyCount) {
+        String[] jobIds = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            jobIds[i] = "ORDER-" + (1000 + i);
+        }
+        return jobIds;
+    }
+
+    /**
+     * @param distribution {@link #UNIFORM} or {@link #ZIPFIAN}
+     * @param keyCount     number of distinct keys
+     * @param length       length of the sequence, a power of two so it can be walked with a mask
+     * @param seed         random seed
+     * @return sequence of key indexes in [0, keyCount)
+     */
+    static int[] sequence(String distribution, int keyCount, int length, long seed) {
+        Random random = new Random(seed);
+        int[] sequence = new int[length];
+        switch (distribution) {
+            case UNIFORM:
+                for (int i = 0; i < length; i++) {
+                    sequence[i] = random.nextInt(keyCount);
+                }
+                return sequence;
+            case ZIPFIAN:
+                double[] cumulative = zipfianCumulative(keyCount);
+                for (int i = 0; i < length; i++) {
+                    sequence[i] = search(cumulative, random.nextDouble());
+                }
+                return sequence;
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+    }
+
+    private static double[] zipfianCumulative(int keyCount) {
+        double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int i = 0; i < keyCount; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPFIAN_CONSTANT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keyCount; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int search(double[] cumulative, double u) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
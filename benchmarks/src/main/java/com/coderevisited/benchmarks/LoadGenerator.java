@@ -0,0 +1,281 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.LaneRouter;
+import com.coderevisited.ThreadPoolWithJobAffinity;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Open-loop load test of a pool: requests arrive at a fixed rate whether or not the pool keeps up, as they would
+ * from clients, and run for a service time drawn from a distribution. Unlike the JMH benchmarks, which submit as
+ * fast as the pool takes jobs, this shows how queues and latency build up near saturation.
+ * <p>
+ * Every request has an intended start time on the arrival schedule. Its latency is measured from that time to the
+ * end of its job, so a producer held up by a full lane, or a stalled pool, is charged for every request it should
+ * have sent meanwhile, which corrects for coordinated omission. Latency measured from the actual submission is
+ * reported too, for contrast. Percentiles are exact, computed from the latency of every measured request, per lane
+ * for implementations with lanes and for the whole pool. Requests the pool rejects have no latency: they are
+ * counted apart and left out of the percentiles, which the report says.
+ * <p>
+ * Options, given as {@code --name value}:
+ * <ul>
+ * <li>{@code implementation} - pool to drive, see {@link Pools}, defaults to {@value Pools#AFFINITY}</li>
+ * <li>{@code poolSize} - number of lanes, defaults to the number of processors</li>
+ * <li>{@code rate} - requests per second, defaults to 50000</li>
+ * <li>{@code duration} - measured seconds, defaults to 30</li>
+ * <li>{@code warmUp} - seconds of load before the measurement, defaults to 10</li>
+ * <li>{@code keys} - number of distinct job ids, defaults to 10000</li>
+ * <li>{@code distribution} - {@value Keys#UNIFORM} or {@value Keys#ZIPFIAN} job ids, defaults to uniform</li>
+ * <li>{@code serviceTime} - service time distribution, see {@link ServiceTimes}, defaults to exponential:10</li>
+ * <li>{@code producers} - threads sharing the arrival schedule, defaults to 1</li>
+ * </ul>
+ * Jobs spin for their service time, so they load the processors like CPU-bound work. Timestamps of every request
+ * are kept, 17 bytes per request, so rate times total time is bounded by {@link #MAX_REQUESTS}.
+ * <p>
+ * Run with {@code java -cp benchmarks/target/benchmarks.jar com.coderevisited.benchmarks.LoadGenerator --rate 100000
+ * --serviceTime exponential:50}. Raising the rate run after run until the p99 of the busiest lane takes off shows
+ * how much load a pool size can take on a host.
+ */
+public final class LoadGenerator {
+
+    /**
+     * Largest number of requests of a run.
+     */
+    static final int MAX_REQUESTS = 200_000_000;
+
+    private static final int KEY_SEQUENCE_LENGTH = 1 << 20;
+    private static final int SERVICE_TIME_SEQUENCE_LENGTH = 1 << 16;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final String implementation;
+    private final int poolSize;
+    private final double rate;
+    private final int durationSeconds;
+    private final int warmUpSeconds;
+    private final int keyCount;
+    private final String distribution;
+    private final String serviceTime;
+    private final int producers;
+
+    private LoadGenerator(Map<String, String> options) {
+        this.implementation = option(options, "implementation", Pools.AFFINITY);
+        this.poolSize = Integer.parseInt(option(options, "poolSize",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        this.rate = Double.parseDouble(option(options, "rate", "50000"));
+        this.durationSeconds = Integer.parseInt(option(options, "duration", "30"));
+        this.warmUpSeconds = Integer.parseInt(option(options, "warmUp", "10"));
+        this.keyCount = Integer.parseInt(option(options, "keys", "10000"));
+        this.distribution = option(options, "distribution", Keys.UNIFORM);
+        this.serviceTime = option(options, "serviceTime", "exponential:10");
+        this.producers = Integer.parseInt(option(options, "producers", "1"));
+        if (!options.isEmpty())
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        if (poolSize <= 0 || !(rate > 0) || durationSeconds <= 0 || warmUpSeconds < 0 || keyCount <= 0
+                || producers <= 0)
+            throw new IllegalArgumentException("Options must be positive");
+        if (rate * (warmUpSeconds + durationSeconds) > MAX_REQUESTS)
+            throw new IllegalArgumentException("More than " + MAX_REQUESTS + " requests, lower the rate or the time");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator;
+        try {
+            generator = new LoadGenerator(parse(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadGenerator [--implementation name] [--poolSize n] [--rate perSecond] "
+                    + "[--duration seconds] [--warmUp seconds] [--keys n] [--distribution uniform|zipfian] "
+                    + "[--serviceTime fixed:us|exponential:us|bimodal:us:slowUs:slowFraction] [--producers n]");
+            System.exit(2);
+            return;
+        }
+        generator.run();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    /**
+     * Takes an option out of the map, so that the ones left over are unknown.
+     */
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private void run() throws InterruptedException {
+        final int requests = (int) (rate * (warmUpSeconds + durationSeconds));
+        final int measuredFrom = (int) (rate * warmUpSeconds);
+        final String[] jobIds = Keys.jobIds(keyCount);
+        final int[] keys = Keys.sequence(distribution, keyCount, KEY_SEQUENCE_LENGTH, 42);
+        final long[] serviceNanos = ServiceTimes.sequence(serviceTime, SERVICE_TIME_SEQUENCE_LENGTH, 43);
+        final long[] submittedAt = new long[requests];
+        final long[] completedAt = new long[requests];
+        final boolean[] rejected = new boolean[requests];
+        final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+
+        System.out.printf("%s, %d lanes, %.0f requests/s, %d s after %d s of warm-up, %d %s job ids, "
+                        + "service time %s, %d producers%n", implementation, poolSize, rate, durationSeconds,
+                warmUpSeconds, keyCount, distribution, serviceTime, producers);
+
+        final ThreadPoolWithJobAffinity pool = Pools.create(implementation, poolSize);
+        final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = producer; i < requests; i += producers) {
+                        //the schedule is fixed up front, a producer running late catches up at once
+                        awaitNanoTime(start + (long) (i * intervalNanos));
+                        final int request = i;
+                        final long service = serviceNanos[i & (SERVICE_TIME_SEQUENCE_LENGTH - 1)];
+                        submittedAt[i] = System.nanoTime();
+                        try {
+                            pool.submit(jobIds[keys[i & (KEY_SEQUENCE_LENGTH - 1)]], new Runnable() {
+                                @Override
+                                public void run() {
+                                    long end = System.nanoTime() + service;
+                                    while (System.nanoTime() < end) {
+                                        //spin like CPU-bound work
+                                    }
+                                    completedAt[request] = System.nanoTime();
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            rejected[i] = true;
+                        }
+                    }
+                }
+            }, "load-generator-" + p);
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        //shutdown waits for every job, whose timestamps are then visible here
+        pool.shutdown();
+
+        report(jobIds, keys, start, intervalNanos, measuredFrom, submittedAt, completedAt, rejected);
+    }
+
+    private static void awaitNanoTime(long deadline) {
+        for (; ; ) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0)
+                return;
+            //parking overshoots by tens of microseconds, the last stretch is spun
+            if (wait > 100_000)
+                LockSupport.parkNanos(wait - 50_000);
+        }
+    }
+
+    private void report(String[] jobIds, int[] keys, long start, double intervalNanos, int measuredFrom,
+                        long[] submittedAt, long[] completedAt, boolean[] rejected) {
+        //implementations without lanes get the row of the whole pool only
+        LaneRouter router = Pools.router(implementation);
+        int lanes = router == null ? 0 : poolSize;
+        int[] laneOfKey = new int[jobIds.length];
+        for (int k = 0; router != null && k < jobIds.length; k++) {
+            laneOfKey[k] = router.lane(jobIds[k], poolSize);
+        }
+        int requests = completedAt.length;
+        int[] laneCounts = new int[lanes];
+        int measured = 0;
+        int rejections = 0;
+        long lastCompletion = start;
+        for (int i = measuredFrom; i < requests; i++) {
+            if (rejected[i]) {
+                rejections++;
+                continue;
+            }
+            if (lanes != 0)
+                laneCounts[laneOfKey[keys[i & (KEY_SEQUENCE_LENGTH - 1)]]]++;
+            measured++;
+            lastCompletion = Math.max(lastCompletion, completedAt[i]);
+        }
+        long[][] laneLatencies = new long[lanes][];
+        for (int lane = 0; lane < lanes; lane++) {
+            laneLatencies[lane] = new long[laneCounts[lane]];
+        }
+        long[] latencies = new long[measured];
+        long[] uncorrected = new long[measured];
+        int[] laneFill = new int[lanes];
+        int n = 0;
+        for (int i = measuredFrom; i < requests; i++) {
+            if (rejected[i])
+                continue;
+            long latency = completedAt[i] - (start + (long) (i * intervalNanos));
+            if (lanes != 0) {
+                int lane = laneOfKey[keys[i & (KEY_SEQUENCE_LENGTH - 1)]];
+                laneLatencies[lane][laneFill[lane]++] = latency;
+            }
+            latencies[n] = latency;
+            uncorrected[n++] = completedAt[i] - submittedAt[i];
+        }
+
+        long measureStart = start + (long) (measuredFrom * intervalNanos);
+        double seconds = Math.max(lastCompletion - measureStart, 1) / 1e9;
+        System.out.printf("achieved %.0f requests/s over %.1f s, %d rejected%n", measured / seconds, seconds,
+                rejections);
+        System.out.println();
+        String excluded = rejections == 0 ? "" : ", " + rejections + " rejected requests left out";
+        System.out.println("latency from intended start, microseconds, corrected for coordinated omission" + excluded);
+        StringBuilder header = new StringBuilder(String.format("%-6s %10s %12s", "lane", "jobs", "requests/s"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %10s", "p" + format(percentile)));
+        }
+        System.out.println(header.append(String.format(" %10s", "max")));
+        for (int lane = 0; lane < lanes; lane++) {
+            System.out.println(row(Integer.toString(lane), laneLatencies[lane], seconds));
+        }
+        System.out.println(row("all", latencies, seconds));
+        System.out.println();
+        System.out.println("latency from actual submission, microseconds, not corrected" + excluded);
+        System.out.println(row("all", uncorrected, seconds));
+    }
+
+    private static String row(String name, long[] latencies, double seconds) {
+        Arrays.sort(latencies);
+        StringBuilder row = new StringBuilder(String.format("%-6s %10d %12.0f", name, latencies.length,
+                latencies.length / seconds));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %10.1f", percentile(latencies, percentile) / 1e3));
+        }
+        return row.append(String.format(" %10.1f", percentile(latencies, 100) / 1e3)).toString();
+    }
+
+    /**
+     * @param sorted latencies in increasing order
+     * @return the smallest latency that the given percentage of latencies does not exceed, 0 if there are none
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0)
+            return 0;
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.min(Math.max(index, 0), sorted.length - 1)];
+    }
+
+    private static String format(double percentile) {
+        return percentile == (long) percentile ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
@@ -0,0 +1,76 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Submit cost of numeric job ids such as account ids: building the decimal string per job versus the
+ * {@code submit(long, Runnable)} overload. Run with {@code -prof gc} to compare the bytes allocated per submit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NumericJobIdBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.AFFINITY_MIXED_HASH})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    @Param({"1024"})
+    int keyCount;
+
+    ThreadPoolWithJobAffinity pool;
+    long[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        int[] sequence = Keys.sequence(Keys.UNIFORM, keyCount, 1 << 16, 42);
+        accountIds = new long[sequence.length];
+        for (int i = 0; i < sequence.length; i++) {
+            accountIds[i] = 1000000000L + sequence[i];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public void stringJobId(Producer producer) {
+        producer.awaitWindow();
+        pool.submit(Long.toString(accountIds[producer.next++ & (accountIds.length - 1)]), producer.job);
+    }
+
+    @Benchmark
+    public void longJobId(Producer producer) {
+        producer.awaitWindow();
+        pool.submit(accountIds[producer.next++ & (accountIds.length - 1)], producer.job);
+    }
+}
@@ -0,0 +1,100 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ActorPerKeyExecutor;
+import com.coderevisited.LaneRouter;
+import com.coderevisited.LaneRouters;
+import com.coderevisited.SerialPerKeyExecutor;
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import com.coderevisited.ThreadPoolWithJobAffinityExecutor;
+import com.coderevisited.WaitStrategy;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Creates the pools compared by the benchmarks, by the name used in their {@code implementation} parameter.
+ */
+final class Pools {
+
+    /**
+     * The lane based affinity executor of this project.
+     */
+    static final String AFFINITY = "affinity";
+
+    /**
+     * The affinity executor routing with {@link LaneRouters#mixedHash()}.
+     */
+    static final String AFFINITY_MIXED_HASH = "affinityMixedHash";
+
+    /**
+     * The affinity executor with lane threads spinning, then yielding, before they park.
+     */
+    static final String AFFINITY_SPIN_THEN_PARK = "affinitySpinThenPark";
+
+    /**
+     * A mailbox and a thread per active job id, virtual threads when run on Java 21 or later.
+     * The pool size is ignored.
+     */
+    static final String ACTOR_PER_KEY = "actorPerKey";
+
+    /**
+     * A serial queue per active job id, scheduled on a work-stealing ForkJoinPool of pool size workers.
+     */
+    static final String SERIAL_PER_KEY = "serialPerKey";
+
+    /**
+     * A plain fixed ThreadPoolExecutor ignoring job ids. Gives no ordering guarantee, upper bound for throughput.
+     */
+    static final String THREAD_POOL_EXECUTOR = "threadPoolExecutor";
+
+    /**
+     * A single thread executor per bucket behind a global lock, the original design of the affinity executor.
+     */
+    static final String SINGLE_THREAD_EXECUTOR_PER_KEY = "singleThreadExecutorPerKey";
+
+    private Pools() {
+    }
+
+    static ThreadPoolWithJobAffinity create(String implementation, int poolSize) {
+        switch (implementation) {
+            case AFFINITY:
+                return new ThreadPoolWithJobAffinityExecutor(poolSize);
+            case AFFINITY_MIXED_HASH:
+                return ThreadPoolWithJobAffinityExecutor.builder(poolSize).router(LaneRouters.mixedHash()).build();
+            case AFFINITY_SPIN_THEN_PARK:
+                return ThreadPoolWithJobAffinityExecutor.builder(poolSize)
+                        .waitStrategy(WaitStrategy.spinThenPark(1000, 100))
+                        .build();
+            case ACTOR_PER_KEY:
+                return new ActorPerKeyExecutor();
+            case SERIAL_PER_KEY:
+                return new SerialPerKeyExecutor(poolSize);
+            case THREAD_POOL_EXECUTOR:
+                return new ThreadPoolExecutorBaseline(poolSize);
+            case SINGLE_THREAD_EXECUTOR_PER_KEY:
+                return new SingleThreadExecutorPerKeyBaseline(poolSize);
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    /**
+     * @return the router placing job ids on the lanes of the implementation, null for implementations without
+     * lanes, which run the jobs of a job id on any of their threads
+     */
+    static LaneRouter router(String implementation) {
+        switch (implementation) {
+            case AFFINITY_MIXED_HASH:
+                return LaneRouters.mixedHash();
+            case ACTOR_PER_KEY:
+            case SERIAL_PER_KEY:
+            case THREAD_POOL_EXECUTOR:
+                return null;
+            default:
+                return LaneRouters.modulo();
+        }
+    }
+}
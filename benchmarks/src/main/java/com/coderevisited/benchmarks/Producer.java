@@ -0,0 +1,49 @@
+package com.coderevisited.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Per producer thread state. Keeps at most {@link #WINDOW} of the producer's jobs in flight, so that unbounded
+ * baselines measure sustained throughput instead of how fast their queues can grow.
+ */
+@State(Scope.Thread)
+public class Producer {
+
+    static final int WINDOW = 4096;
+
+    final AtomicLong completed = new AtomicLong();
+    final Runnable job = new Runnable() {
+        @Override
+        public void run() {
+            completed.incrementAndGet();
+        }
+    };
+    long submitted;
+    int next;
+
+    /**
+     * Called before each submit. Waits while the producer has a full window of jobs in flight.
+     */
+    void awaitWindow() {
+        awaitWindow(1);
+    }
+
+    /**
+     * Called before submitting the given number of jobs at once.
+     */
+    void awaitWindow(int jobs) {
+        while (submitted - completed.get() > WINDOW - jobs) {
+            Thread.yield();
+        }
+        submitted += jobs;
+    }
+}
@@ -0,0 +1,78 @@
+package com.coderevisited.benchmarks;
+
+import java.util.Random;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Pre-computed job service time sequences for the {@link LoadGenerator}, so that drawing the next service time
+ * costs nothing on the submit path. Distributions are given as a spec, times in microseconds:
+ * <ul>
+ * <li>{@code fixed:<micros>} - every job runs for the same time</li>
+ * <li>{@code exponential:<mean micros>} - memoryless service times, the usual M/M/c model</li>
+ * <li>{@code bimodal:<micros>:<slow micros>:<slow fraction>} - mostly fast jobs with a fraction of slow ones, as
+ * with cache misses or calls to a slow dependency</li>
+ * </ul>
+ */
+final class ServiceTimes {
+
+    private ServiceTimes() {
+    }
+
+    /**
+     * @param spec   distribution spec, see the class comment
+     * @param length length of the sequence, a power of two so it can be walked with a mask
+     * @param seed   random seed
+     * @return sequence of service times in nanoseconds
+     */
+    static long[] sequence(String spec, int length, long seed) {
+        String[] parts = spec.split(":");
+        Random random = new Random(seed);
+        long[] sequence = new long[length];
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    if (parts.length != 2)
+                        break;
+                    long fixed = nanos(Double.parseDouble(parts[1]));
+                    for (int i = 0; i < length; i++) {
+                        sequence[i] = fixed;
+                    }
+                    return sequence;
+                case "exponential":
+                    if (parts.length != 2)
+                        break;
+                    double mean = Double.parseDouble(parts[1]);
+                    for (int i = 0; i < length; i++) {
+                        sequence[i] = nanos(-mean * Math.log(1 - random.nextDouble()));
+                    }
+                    return sequence;
+                case "bimodal":
+                    if (parts.length != 4)
+                        break;
+                    long fast = nanos(Double.parseDouble(parts[1]));
+                    long slow = nanos(Double.parseDouble(parts[2]));
+                    double slowFraction = Double.parseDouble(parts[3]);
+                    for (int i = 0; i < length; i++) {
+                        sequence[i] = random.nextDouble() < slowFraction ? slow : fast;
+                    }
+                    return sequence;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad service time " + spec, e);
+        }
+        throw new IllegalArgumentException("Unknown service time " + spec);
+    }
+
+    private static long nanos(double micros) {
+        if (!(micros >= 0))
+            throw new IllegalArgumentException("Negative service time " + micros);
+        return Math.round(micros * 1000);
+    }
+}
@@ -0,0 +1,74 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Time for shutdown to return when every lane still has a backlog of queued jobs to drain.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Thread)
+public class ShutdownDrainBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.ACTOR_PER_KEY, Pools.SERIAL_PER_KEY, Pools.THREAD_POOL_EXECUTOR,
+            Pools.SINGLE_THREAD_EXECUTOR_PER_KEY})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    /**
+     * Jobs queued before shutdown, spread uniformly over the lanes.
+     */
+    @Param({"8000"})
+    int backlog;
+
+    @Param({"1000"})
+    int jobTokens;
+
+    ThreadPoolWithJobAffinity pool;
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        pool = Pools.create(implementation, poolSize);
+        String[] jobIds = Keys.jobIds(1024);
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                Blackhole.consumeCPU(jobTokens);
+            }
+        };
+        for (int i = 0; i < backlog; i++) {
+            pool.submit(jobIds[i & 1023], job);
+        }
+    }
+
+    @Benchmark
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
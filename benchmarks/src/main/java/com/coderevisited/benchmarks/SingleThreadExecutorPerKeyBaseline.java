@@ -0,0 +1,71 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Baseline: the original affinity executor, a map from bucket to single thread executor guarded by a global lock.
+ */
+final class SingleThreadExecutorPerKeyBaseline implements ThreadPoolWithJobAffinity {
+
+    private final int poolSize;
+    private final ConcurrentMap<Integer, ExecutorService> map = new ConcurrentHashMap<>();
+    private final Lock lock = new ReentrantLock();
+    private volatile boolean running = true;
+
+    SingleThreadExecutorPerKeyBaseline(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public int poolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public void submit(String jobId, Runnable job) {
+        int bucketNumber = Math.abs(jobId.hashCode() % poolSize);
+        lock.lock();
+        try {
+            if (!running)
+                throw new RejectedExecutionException("Thread pool is terminated");
+            if (!map.containsKey(bucketNumber)) {
+                map.put(bucketNumber, Executors.newSingleThreadExecutor());
+            }
+            map.get(bucketNumber).submit(job);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            for (ExecutorService executor : map.values()) {
+                executor.shutdown();
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            map.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
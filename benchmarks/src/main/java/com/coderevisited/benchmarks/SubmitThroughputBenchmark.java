@@ -0,0 +1,95 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Sustained submit throughput as the number of producer threads grows. Job ids are uniformly spread over
+ * {@code keyCount} keys and each job only counts its own completion, so the cost measured is the one of the
+ * submit path and the handoff to the lane.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubmitThroughputBenchmark {
+
+    @Param({Pools.AFFINITY, Pools.ACTOR_PER_KEY, Pools.SERIAL_PER_KEY, Pools.THREAD_POOL_EXECUTOR,
+            Pools.SINGLE_THREAD_EXECUTOR_PER_KEY})
+    String implementation;
+
+    @Param({"8"})
+    int poolSize;
+
+    @Param({"1024"})
+    int keyCount;
+
+    ThreadPoolWithJobAffinity pool;
+    String[] jobIds;
+    int[] sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Pools.create(implementation, poolSize);
+        jobIds = Keys.jobIds(keyCount);
+        sequence = Keys.sequence(Keys.UNIFORM, keyCount, 1 << 16, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void producers01(Producer producer) {
+        submit(producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void producers04(Producer producer) {
+        submit(producer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void producers16(Producer producer) {
+        submit(producer);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void producers64(Producer producer) {
+        submit(producer);
+    }
+
+    private void submit(Producer producer) {
+        producer.awaitWindow();
+        int key = sequence[producer.next++ & (sequence.length - 1)];
+        pool.submit(jobIds[key], producer.job);
+    }
+}
@@ -0,0 +1,46 @@
+package com.coderevisited.benchmarks;
+
+import com.coderevisited.ThreadPoolWithJobAffinity;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Baseline: all jobs go to one shared queue of a fixed ThreadPoolExecutor, the job id is ignored.
+ */
+final class ThreadPoolExecutorBaseline implements ThreadPoolWithJobAffinity {
+
+    private final ThreadPoolExecutor executor;
+
+    ThreadPoolExecutorBaseline(int poolSize) {
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+    }
+
+    @Override
+    public int poolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    @Override
+    public void submit(String jobId, Runnable job) {
+        executor.execute(job);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
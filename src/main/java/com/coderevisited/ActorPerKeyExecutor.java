@@ -0,0 +1,212 @@
+package com.coderevisited;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Alternative to the lane model of {@link ThreadPoolWithJobAffinityExecutor}: every active job id gets its own
+ * ordered mailbox and its own thread, a virtual thread when the runtime supports them (Java 21 onwards).
+ * <p>
+ * Job ids never share a thread, so a job blocking on I/O only delays the jobs of its own job id. A mailbox is
+ * created on the first job of its job id and retired once it has been idle for the idle timeout. While a mailbox
+ * lives, all its jobs run on its thread, one at a time and in submission order. Jobs submitted after a mailbox has
+ * retired run on the thread of a new mailbox, still after every job of the retired one.
+ * <p>
+ * {@link #poolSize()} is the number of live mailboxes.
+ */
+public class ActorPerKeyExecutor implements ThreadPoolWithJobAffinity {
+
+    static final long DEFAULT_IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final AtomicInteger poolNumber = new AtomicInteger(1);
+
+    private final ThreadFactory threadFactory;
+    private final long idleTimeoutNanos;
+    private final ConcurrentMap<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    /**
+     * Runs mailboxes on virtual threads if available, on daemon platform threads otherwise, and retires them after
+     * one second of idleness.
+     */
+    public ActorPerKeyExecutor() {
+        this(defaultThreadFactory(), DEFAULT_IDLE_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param threadFactory creates the thread of each mailbox
+     * @param idleTimeout   time a mailbox stays alive without jobs
+     * @param unit          unit of the idle timeout
+     */
+    public ActorPerKeyExecutor(ThreadFactory threadFactory, long idleTimeout, TimeUnit unit) {
+        if (threadFactory == null || unit == null)
+            throw new NullPointerException();
+        if (idleTimeout < 0)
+            throw new IllegalArgumentException();
+        this.threadFactory = threadFactory;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
+
+    /**
+     * @return a factory of virtual threads when the runtime has them, of daemon platform threads otherwise
+     */
+    public static ThreadFactory defaultThreadFactory() {
+        String prefix = "actor-pool-" + poolNumber.getAndIncrement() + "-";
+        ThreadFactory virtual = virtualThreadFactory(prefix);
+        if (virtual != null)
+            return virtual;
+        AtomicInteger threadNumber = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Looks up {@code Thread.ofVirtual().name(prefix, 0).factory()} reflectively, so this class still runs on
+     * runtimes without virtual threads.
+     *
+     * @return the factory, or null if virtual threads are not available
+     */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method name = builderType.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int poolSize() {
+        return mailboxes.size();
+    }
+
+    /**
+     * Queues the job on the mailbox of its job id, creating the mailbox if the job id has none.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    @Override
+    public void submit(String jobId, Runnable job) {
+
+        if (jobId == null || job == null)
+            throw new NullPointerException();
+
+        Mailbox[] created = new Mailbox[1];
+        //enqueueing inside compute excludes a concurrent retirement of the same mailbox
+        Mailbox mailbox = mailboxes.compute(jobId, (key, current) -> {
+            if (!running)
+                throw new RejectedExecutionException("Thread pool is terminated");
+            if (current == null)
+                current = created[0] = new Mailbox(key);
+            current.jobs.add(job);
+            return current;
+        });
+        if (created[0] != null)
+            mailbox.start();
+        else
+            LockSupport.unpark(mailbox.thread);
+    }
+
+    /**
+     * Rejects new jobs, lets every mailbox run the jobs it holds and waits for all mailbox threads to finish.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        boolean interrupted = false;
+        //mailboxes created by submits racing with this method are picked up by the next pass
+        while (!mailboxes.isEmpty()) {
+            for (Mailbox mailbox : mailboxes.values()) {
+                LockSupport.unpark(mailbox.thread);
+                while (mailbox.thread.isAlive() || !mailbox.started) {
+                    try {
+                        mailbox.thread.join(10000);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    if (!mailbox.started)
+                        Thread.yield();
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Ordered queue of the jobs of one job id, drained by its own thread.
+     */
+    private final class Mailbox implements Runnable {
+
+        final String jobId;
+        final ConcurrentLinkedQueue<Runnable> jobs = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+        volatile boolean started;
+
+        Mailbox(String jobId) {
+            this.jobId = jobId;
+            this.thread = threadFactory.newThread(this);
+        }
+
+        void start() {
+            thread.start();
+            started = true;
+        }
+
+        @Override
+        public void run() {
+            long idleSince = System.nanoTime();
+            for (; ; ) {
+                Runnable job = jobs.poll();
+                if (job != null) {
+                    try {
+                        job.run();
+                    } catch (Throwable t) {
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                    }
+                    Thread.interrupted();
+                    idleSince = System.nanoTime();
+                    continue;
+                }
+                long idle = System.nanoTime() - idleSince;
+                if ((!running || idle >= idleTimeoutNanos) && retire())
+                    return;
+                LockSupport.parkNanos(this, running ? idleTimeoutNanos - idle : 0L);
+            }
+        }
+
+        /**
+         * @return true if this mailbox was empty and has been removed, false if a job arrived meanwhile
+         */
+        private boolean retire() {
+            boolean[] retired = new boolean[1];
+            mailboxes.computeIfPresent(jobId, (key, current) -> {
+                if (current != this || !jobs.isEmpty())
+                    return current;
+                retired[0] = true;
+                return null;
+            });
+            return retired[0];
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.coderevisited;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BinaryOperator;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Conflating submission of a pool, see {@link ThreadPoolWithJobAffinityExecutor#submitConflated(String, Runnable)}.
+ * <p>
+ * A job id has at most one pending conflated job, queued on its lane as the job itself. Jobs submitted while it is
+ * pending are merged into it. The pending job leaves the map when it starts, so the next submission queues a new one
+ * behind it. A plain job of the job id seals the pending job by removing it from the map, so that no later job is
+ * merged into a job queued ahead of the plain one. A pending job discarded by its lane leaves the map too, so the
+ * next submission queues a new one rather than merging into a job that will never run.
+ */
+final class Conflator {
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    Conflator(ThreadPoolWithJobAffinityExecutor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param merge combines the pending job with the submitted one, called under the map entry of the job id
+     */
+    void submit(String jobId, final Runnable job, final BinaryOperator<Runnable> merge) {
+        boolean[] created = new boolean[1];
+        Pending queued = pending.compute(jobId, (key, current) -> {
+            if (current == null) {
+                created[0] = true;
+                return new Pending(key, job);
+            }
+            Runnable merged = merge.apply(current.job, job);
+            if (merged == null)
+                throw new NullPointerException("Merge of " + key + " returned null");
+            current.job = merged;
+            return current;
+        });
+        if (!created[0])
+            return;
+        try {
+            pool.submitRouted(jobId, queued);
+        } catch (RejectedExecutionException e) {
+            pending.remove(jobId, queued);
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether any job id has a pending conflated job
+     */
+    boolean isActive() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Called before a plain job of the given job id is queued. The pending conflated job, if any, still runs.
+     */
+    void seal(String jobId) {
+        pending.remove(jobId);
+    }
+
+    /**
+     * Called by a lane discarding a queued job, see {@link OverflowPolicy#DROP_OLDEST}.
+     *
+     * @param job the discarded job
+     */
+    static void discarded(Runnable job) {
+        if (job instanceof Pending)
+            ((Pending) job).discard();
+    }
+
+    /**
+     * @return number of job ids with a pending conflated job
+     */
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Pending conflated job of one job id, queued on its lane in place of the jobs it stands for.
+     */
+    private final class Pending implements Runnable {
+
+        final String jobId;
+        volatile Runnable job;
+
+        Pending(String jobId, Runnable job) {
+            this.jobId = jobId;
+            this.job = job;
+        }
+
+        void discard() {
+            pending.remove(jobId, this);
+        }
+
+        @Override
+        public void run() {
+            //once out of the map, removed here or sealed, no submission can change the job any more
+            pending.remove(jobId, this);
+            job.run();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Runs durable jobs, see {@link ThreadPoolWithJobAffinityExecutor#submitDurable(String, int, byte[])}. Registered
+ * under a handler id with {@link ThreadPoolWithJobAffinityExecutor.Builder#durableHandler(int, DurableJobHandler)},
+ * so that a journal written by one process can be replayed by the next.
+ */
+public interface DurableJobHandler {
+
+    /**
+     * Runs a durable job on the lane of its job id. A job may run again after a restart if the process died while
+     * it was running, so handlers should be idempotent.
+     *
+     * @param jobId   a string containing job id.
+     * @param payload the payload the job was submitted with
+     */
+    void handle(String jobId, byte[] payload);
+}
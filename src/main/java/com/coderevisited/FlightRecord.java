@@ -0,0 +1,91 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * A job recorded by the flight recorder of a lane, see {@link ThreadPoolWithJobAffinityExecutor#flightRecords(int)}.
+ * Times are {@link System#nanoTime()} readings.
+ */
+public final class FlightRecord {
+
+    private final int lane;
+    private final int jobIdHash;
+    private final long submittedAt;
+    private final long startedAt;
+    private final long endedAt;
+
+    FlightRecord(int lane, int jobIdHash, long submittedAt, long startedAt, long endedAt) {
+        this.lane = lane;
+        this.jobIdHash = jobIdHash;
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+    }
+
+    /**
+     * @return index of the lane in the pool
+     */
+    public int lane() {
+        return lane;
+    }
+
+    /**
+     * @return {@link String#hashCode()} of the job id, or of its decimal string for a numeric job id. 0 for the
+     * jobs of the pool itself.
+     */
+    public int jobIdHash() {
+        return jobIdHash;
+    }
+
+    /**
+     * @return time the job was queued on the lane
+     */
+    public long submittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * @return time the job started
+     */
+    public long startedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return time the job ended, whether it returned or threw, meaningless while it runs
+     */
+    public long endedAt() {
+        return endedAt;
+    }
+
+    /**
+     * @return whether the job was still running when the record was taken
+     */
+    public boolean isRunning() {
+        return endedAt == FlightRecorder.RUNNING;
+    }
+
+    /**
+     * @return nanoseconds between submission and start of the job
+     */
+    public long queueWaitNanos() {
+        return startedAt - submittedAt;
+    }
+
+    /**
+     * @return nanoseconds spent running the job, or until now if it is still running
+     */
+    public long runTimeNanos() {
+        return (isRunning() ? System.nanoTime() : endedAt) - startedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightRecord{lane=" + lane + ", jobIdHash=" + Integer.toHexString(jobIdHash) + ", queueWaitNanos="
+                + queueWaitNanos() + ", runTimeNanos=" + runTimeNanos() + (isRunning() ? ", running" : "") + '}';
+    }
+}
@@ -0,0 +1,114 @@
+package com.coderevisited;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Fixed-size ring of the latest jobs run by one lane, see {@link ThreadPoolWithJobAffinityExecutor#flightRecords(int)}.
+ * <p>
+ * An entry holds the hash of the job id and the submission, start and end times of the job, as four longs of a
+ * single array, so recording a job is four plain stores between two ordered stores of a sequence, with the
+ * timestamps the lane takes anyway. The consumer of the lane is the only writer. Like a sequence lock, the sequence
+ * is odd while an entry is being written; readers copy the entries, then drop those the writer has overwritten or
+ * is overwriting meanwhile, so a snapshot never shows a torn entry, save for the end time of the job running at
+ * the time.
+ */
+final class FlightRecorder {
+
+    /**
+     * End time of a job still running.
+     */
+    static final long RUNNING = Long.MIN_VALUE;
+
+    private static final int STRIDE = 4;
+
+    private static final VarHandle RECORDED;
+
+    static {
+        try {
+            RECORDED = MethodHandles.lookup().findVarHandle(FlightRecorder.class, "recorded", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long[] entries;
+    private final int mask;
+    /**
+     * Twice the number of jobs recorded so far, plus one while an entry is being written. Written by the consumer
+     * of the lane only, through {@link #RECORDED}.
+     */
+    private long recorded;
+
+    /**
+     * @param capacity number of entries, rounded up to a power of two
+     */
+    FlightRecorder(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.entries = new long[size * STRIDE];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Records a job about to run. Called by the consumer of the lane only.
+     *
+     * @return position of the entry, to record the end of the job with
+     */
+    int start(int jobIdHash, long submittedAt, long startedAt) {
+        long sequence = (long) RECORDED.get(this);
+        int entry = (int) ((sequence >> 1) & mask) * STRIDE;
+        RECORDED.setOpaque(this, sequence + 1);
+        //a reader seeing none of the stores below sees the odd sequence
+        VarHandle.storeStoreFence();
+        entries[entry] = jobIdHash;
+        entries[entry + 1] = submittedAt;
+        entries[entry + 2] = startedAt;
+        entries[entry + 3] = RUNNING;
+        RECORDED.setRelease(this, sequence + 2);
+        return entry;
+    }
+
+    /**
+     * Records the end of a job. Called by the consumer of the lane only.
+     *
+     * @param entry position returned by {@link #start(int, long, long)}
+     */
+    void end(int entry, long endedAt) {
+        entries[entry + 3] = endedAt;
+    }
+
+    /**
+     * @param lane index of the lane, copied into the records
+     * @return the recorded jobs still in the ring, oldest first
+     */
+    List<FlightRecord> snapshot(int lane) {
+        int capacity = mask + 1;
+        long before = (long) RECORDED.getAcquire(this) >> 1;
+        long first = Math.max(before - capacity, 0);
+        long[] copy = new long[(int) (before - first) * STRIDE];
+        for (long sequence = first; sequence < before; sequence++) {
+            System.arraycopy(entries, (int) (sequence & mask) * STRIDE, copy, (int) (sequence - first) * STRIDE,
+                    STRIDE);
+        }
+        //the copy is read before the sequence, so the sequence tells which entries may have been overwritten
+        VarHandle.acquireFence();
+        long after = (long) RECORDED.getAcquire(this);
+        //an odd sequence means that the entry of job after / 2 is being written over the one capacity jobs older
+        long valid = Math.max(first, (after >> 1) + (after & 1) - capacity);
+        List<FlightRecord> records = new ArrayList<>((int) Math.max(before - valid, 0));
+        for (long sequence = valid; sequence < before; sequence++) {
+            int entry = (int) (sequence - first) * STRIDE;
+            records.add(new FlightRecord(lane, (int) copy[entry], copy[entry + 1], copy[entry + 2],
+                    copy[entry + 3]));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,142 @@
+package com.coderevisited;
+
+import java.util.Arrays;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * An ordered batch of jobs with their job ids, submitted at once with
+ * {@link ThreadPoolWithJobAffinity#submitAll(JobBatch)}. Jobs of a job id run in the order they were added, after
+ * the jobs of that job id submitted before the batch.
+ * <p>
+ * A batch is meant to be filled by one thread, for instance a network decoder, and reused once submitted:
+ * {@link #clear()} keeps the arrays, so a batch of a stable size allocates nothing. Not thread-safe.
+ */
+public final class JobBatch {
+
+    private String[] jobIds;
+    private long[] numericJobIds;
+    private Runnable[] jobs;
+    private int size;
+
+    public JobBatch() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity number of jobs the batch holds before growing
+     */
+    public JobBatch(int initialCapacity) {
+        if (initialCapacity <= 0)
+            throw new IllegalArgumentException();
+        this.jobIds = new String[initialCapacity];
+        this.numericJobIds = new long[initialCapacity];
+        this.jobs = new Runnable[initialCapacity];
+    }
+
+    /**
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return this batch
+     */
+    public JobBatch add(String jobId, Runnable job) {
+        if (jobId == null || job == null)
+            throw new NullPointerException();
+        ensureCapacity();
+        jobIds[size] = jobId;
+        jobs[size++] = job;
+        return this;
+    }
+
+    /**
+     * @param jobId a numeric job id, same as its decimal string, see
+     *              {@link ThreadPoolWithJobAffinity#submit(long, Runnable)}.
+     * @param job   a Runnable representing the job to be executed.
+     * @return this batch
+     */
+    public JobBatch add(long jobId, Runnable job) {
+        if (job == null)
+            throw new NullPointerException();
+        ensureCapacity();
+        numericJobIds[size] = jobId;
+        jobs[size++] = job;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empties the batch, keeping its capacity.
+     */
+    public void clear() {
+        truncate(0);
+    }
+
+    /**
+     * @return whether the job at the given index was added with a numeric job id
+     */
+    boolean isNumeric(int index) {
+        return jobIds[index] == null;
+    }
+
+    String jobId(int index) {
+        return jobIds[index];
+    }
+
+    long numericJobId(int index) {
+        return numericJobIds[index];
+    }
+
+    Runnable job(int index) {
+        return jobs[index];
+    }
+
+    /**
+     * Moves the job at an index to a lower one, for the pool keeping the jobs it could not queue.
+     */
+    void move(int from, int to) {
+        jobIds[to] = jobIds[from];
+        numericJobIds[to] = numericJobIds[from];
+        jobs[to] = jobs[from];
+    }
+
+    /**
+     * Drops the jobs from the given index on, keeping the capacity.
+     */
+    void truncate(int newSize) {
+        Arrays.fill(jobIds, newSize, size, null);
+        Arrays.fill(jobs, newSize, size, null);
+        size = newSize;
+    }
+
+    /**
+     * Submits every job of the batch on its own, in order.
+     */
+    void submitEach(ThreadPoolWithJobAffinity pool) {
+        for (int i = 0; i < size; i++) {
+            if (jobIds[i] == null)
+                pool.submit(numericJobIds[i], jobs[i]);
+            else
+                pool.submit(jobIds[i], jobs[i]);
+        }
+    }
+
+    private void ensureCapacity() {
+        if (size < jobs.length)
+            return;
+        int capacity = jobs.length << 1;
+        jobIds = Arrays.copyOf(jobIds, capacity);
+        numericJobIds = Arrays.copyOf(numericJobIds, capacity);
+        jobs = Arrays.copyOf(jobs, capacity);
+    }
+}
@@ -0,0 +1,48 @@
+package com.coderevisited;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Future of a job submitted with {@link ThreadPoolWithJobAffinity#submit(String, Callable)}. It is queued as the job
+ * itself, so a result-bearing submission costs a single object on top of the task.
+ * <p>
+ * A task that throws completes the future exceptionally; the exception is not reported to the uncaught exception
+ * handler of the thread. A future cancelled or completed before its turn comes skips the task.
+ *
+ * @param <T> result type
+ */
+final class JobFuture<T> extends CompletableFuture<T> implements Runnable {
+
+    private Callable<T> task;
+
+    JobFuture(Callable<T> task) {
+        this.task = task;
+    }
+
+    @Override
+    public void run() {
+        Callable<T> task = this.task;
+        //the task is not needed once run, nor kept reachable by dependent stages holding this future
+        this.task = null;
+        if (task == null || isDone())
+            return;
+        try {
+            complete(task.call());
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        Callable<T> task = this.task;
+        return super.toString() + (task != null ? "[Task = " + task + "]" : "");
+    }
+}
@@ -0,0 +1,329 @@
+package com.coderevisited;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Append-only journal of durable jobs, on memory-mapped segment files of a fixed size.
+ * <p>
+ * A record holds the job id, the handler id and the payload of a job, and a status byte. Appending copies the
+ * record into the mapped segment and writes its length last, with release semantics, so a record whose length
+ * is set is complete. Once a segment is full, appends roll over to a new one. Writes go to the page cache, so
+ * records survive the death of the process at the cost of a memory copy, but only those flushed by the operating
+ * system survive the loss of the host.
+ * <p>
+ * Acknowledging a record, once its job has run, is a single byte store in the mapped segment plus a decrement of
+ * the count of pending records of the segment; no system call is made. A segment that has been rolled over and
+ * has no pending record left is deleted.
+ * <p>
+ * When a journal is opened, existing segments are scanned in order and their pending records are kept for
+ * replay, in journal order, so that jobs of a job id are replayed in the order they were submitted. New records
+ * go to a new segment.
+ */
+final class Journal {
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    //record layout: length, handler id, job id length, payload length, status, job id, payload, padding
+    private static final int HANDLER_ID = 4;
+    private static final int JOB_ID_LENGTH = 8;
+    private static final int PAYLOAD_LENGTH = 12;
+    private static final int STATUS = 16;
+    private static final int HEADER = 17;
+    private static final byte PENDING = 0;
+    private static final byte ACKNOWLEDGED = 1;
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<Integer, DurableJobHandler> handlers;
+    private final List<Record> replay = new ArrayList<>();
+
+    //guarded by this, holds the segments not yet released
+    private final List<Segment> open = new ArrayList<>();
+    private Segment current;
+    private int position;
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, and collects the records left pending.
+     *
+     * @param directory   directory of the segment files
+     * @param segmentSize size of a segment file, in bytes
+     * @param handlers    handlers of the durable jobs, by handler id
+     * @throws UncheckedIOException  if the journal can not be read
+     * @throws IllegalStateException if a pending record names an unknown handler
+     */
+    Journal(Path directory, int segmentSize, Map<Integer, DurableJobHandler> handlers) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.handlers = handlers;
+        try {
+            Files.createDirectories(directory);
+            List<Path> paths = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                for (Path path : stream) {
+                    paths.add(path);
+                }
+            }
+            //sequence numbers are zero padded, so names sort in sequence order
+            Collections.sort(paths);
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                scan(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open journal in " + directory, e);
+        }
+    }
+
+    private void scan(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.sealed = true;
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER <= buffer.capacity()) {
+            int length = (int) INT.getAcquire(buffer, offset);
+            if (length <= 0)
+                break;
+            if (buffer.get(offset + STATUS) == PENDING) {
+                int handlerId = buffer.getInt(offset + HANDLER_ID);
+                DurableJobHandler handler = handlers.get(handlerId);
+                if (handler == null)
+                    throw new IllegalStateException("No handler " + handlerId + " to replay " + path);
+                byte[] jobId = new byte[buffer.getInt(offset + JOB_ID_LENGTH)];
+                byte[] payload = new byte[buffer.getInt(offset + PAYLOAD_LENGTH)];
+                ByteBuffer reader = buffer.duplicate();
+                reader.position(offset + HEADER);
+                reader.get(jobId);
+                reader.get(payload);
+                segment.pending.incrementAndGet();
+                replay.add(new Record(segment, offset, new String(jobId, StandardCharsets.UTF_8), handler, payload));
+            }
+            offset += length;
+        }
+        if (segment.pending.get() == 0)
+            release(segment);
+        else
+            open.add(segment);
+    }
+
+    /**
+     * @return records left pending by the previous process, in journal order
+     */
+    List<Record> takeReplay() {
+        List<Record> records = new ArrayList<>(replay);
+        replay.clear();
+        return records;
+    }
+
+    /**
+     * Appends a record for a durable job.
+     *
+     * @param jobId     a string containing job id.
+     * @param handlerId id of the handler of the job
+     * @param payload   payload of the job, not copied by the returned job
+     * @return the job, acknowledging its record once it has run
+     * @throws IllegalArgumentException   if the handler is unknown, or the record does not fit in a segment
+     * @throws RejectedExecutionException if the journal has been closed
+     * @throws UncheckedIOException       if a new segment can not be created
+     */
+    synchronized Record append(String jobId, int handlerId, byte[] payload) {
+        DurableJobHandler handler = handlers.get(handlerId);
+        if (handler == null)
+            throw new IllegalArgumentException("No handler " + handlerId);
+        if (closed)
+            throw new RejectedExecutionException("Journal is closed");
+        byte[] encodedJobId = jobId.getBytes(StandardCharsets.UTF_8);
+        //records start on an int boundary, so that their length can be written atomically
+        long size = ((long) HEADER + encodedJobId.length + payload.length + 3) & ~3L;
+        if (size > segmentSize)
+            throw new IllegalArgumentException("Record of " + size + " bytes does not fit in a segment");
+        int length = (int) size;
+        if (current == null || position + length > segmentSize)
+            roll();
+        int offset = position;
+        position += length;
+        MappedByteBuffer buffer = current.buffer;
+        buffer.putInt(offset + HANDLER_ID, handlerId);
+        buffer.putInt(offset + JOB_ID_LENGTH, encodedJobId.length);
+        buffer.putInt(offset + PAYLOAD_LENGTH, payload.length);
+        buffer.put(offset + STATUS, PENDING);
+        ByteBuffer writer = current.writer;
+        writer.position(offset + HEADER);
+        writer.put(encodedJobId);
+        writer.put(payload);
+        current.pending.incrementAndGet();
+        INT.setRelease(buffer, offset, length);
+        return new Record(current, offset, jobId, handler, payload);
+    }
+
+    private void roll() {
+        if (current != null) {
+            current.sealed = true;
+            if (current.pending.get() == 0)
+                release(current);
+        }
+        Path path = directory.resolve(String.format("%s%016d%s", PREFIX, nextSequence++, SUFFIX));
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            current = new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create journal segment " + path, e);
+        }
+        open.add(current);
+        position = 0;
+    }
+
+    /**
+     * @return number of segments mapped and not yet released
+     */
+    synchronized int openSegments() {
+        return open.size();
+    }
+
+    /**
+     * Flushes the open segments to storage and closes them. Records still pending are replayed by the next
+     * journal opened on the directory.
+     */
+    synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (Segment segment : open) {
+            segment.buffer.force();
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                //the mapping stays valid, and the next journal reads what the mapping holds
+            }
+        }
+        open.clear();
+    }
+
+    private void acknowledge(Segment segment, int offset) {
+        segment.buffer.put(offset + STATUS, ACKNOWLEDGED);
+        if (segment.pending.decrementAndGet() == 0 && segment.sealed)
+            release(segment);
+    }
+
+    /**
+     * Deletes a sealed segment without pending records, once, and drops it so that its mapping can be collected.
+     * Called on the acknowledgement of the last record of a segment, so taking the journal monitor costs once per
+     * segment.
+     */
+    private synchronized void release(Segment segment) {
+        if (!segment.deleted.compareAndSet(false, true))
+            return;
+        open.remove(segment);
+        //nothing reads the buffers once the last record is acknowledged
+        segment.buffer = null;
+        segment.writer = null;
+        try {
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            //a segment left behind only holds acknowledged records, and is deleted by the next journal
+        }
+    }
+
+    /**
+     * A segment file and its mapping.
+     */
+    private static final class Segment {
+
+        final Path path;
+        final FileChannel channel;
+        /**
+         * Mapping of the file, cleared on release.
+         */
+        MappedByteBuffer buffer;
+        /**
+         * Cursor for the bulk copies of appends, guarded by the journal.
+         */
+        ByteBuffer writer;
+        final AtomicInteger pending = new AtomicInteger();
+        final AtomicBoolean deleted = new AtomicBoolean();
+        volatile boolean sealed;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.writer = buffer.duplicate();
+        }
+    }
+
+    /**
+     * A durable job, acknowledging its record once it has run, whether its handler returned or threw.
+     */
+    final class Record implements Runnable {
+
+        private final Segment segment;
+        private final int offset;
+        private final String jobId;
+        private final DurableJobHandler handler;
+        private final byte[] payload;
+
+        private Record(Segment segment, int offset, String jobId, DurableJobHandler handler, byte[] payload) {
+            this.segment = segment;
+            this.offset = offset;
+            this.jobId = jobId;
+            this.handler = handler;
+            this.payload = payload;
+        }
+
+        String jobId() {
+            return jobId;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handler.handle(jobId, payload);
+            } finally {
+                acknowledge(segment, offset);
+            }
+        }
+
+        /**
+         * Acknowledges the record of a job that will not run, such as one rejected on submission.
+         */
+        void discard() {
+            acknowledge(segment, offset);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.coderevisited;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Holds back the jobs of job ids taken by multi-key jobs on one lane, see {@link MultiKeyJob}, while the lane goes
+ * on with the jobs of other job ids.
+ * <p>
+ * A part reached by the consumer takes its job ids until released. Jobs of a taken job id are set aside in queue
+ * order, and so is a part sharing a job id with an earlier part, which takes its job ids from its place in the queue
+ * on. Once a part is released the jobs set aside are looked at again in order, those no longer held back run.
+ * <p>
+ * Used by the current consumer of the lane only, but for {@link #release(MultiKeyJob.Part)}. While nothing is
+ * held back, which is the common case, a lane pays for a field read and a type check per job.
+ */
+final class KeyGate {
+
+    private final LaneStats stats;
+    private final Thread thread;
+    /**
+     * Parts released by the lane that ran their job, taken by the consumer.
+     */
+    private final ConcurrentLinkedQueue<MultiKeyJob.Part> released = new ConcurrentLinkedQueue<>();
+    /**
+     * Job ids held back, with the number of parts, reached or set aside, taking each.
+     */
+    private final Map<String, Integer> taken = new HashMap<>();
+    /**
+     * Jobs set aside, in queue order.
+     */
+    private ArrayDeque<Held> held = new ArrayDeque<>();
+
+    /**
+     * @param stats  metrics of the lane, which count the jobs set aside once they run
+     * @param thread lane thread, woken by releases and reporting the failures of jobs set aside
+     */
+    KeyGate(LaneStats stats, Thread thread) {
+        this.stats = stats;
+        this.thread = thread;
+    }
+
+    /**
+     * @return whether some job id is held back
+     */
+    boolean isHolding() {
+        return !taken.isEmpty();
+    }
+
+    /**
+     * Looks at a job taken off the queue, to be called for every job while {@link #isHolding()} and for every part.
+     *
+     * @param job        the job
+     * @param key        its job id as queued
+     * @param numericKey its numeric job id
+     * @return the job to run now, the job of a multi-key job if it was its last part, or null if there is nothing to
+     * run
+     */
+    Runnable admit(Runnable job, Object key, long numericKey) {
+        if (job instanceof MultiKeyJob.Part) {
+            MultiKeyJob.Part part = (MultiKeyJob.Part) job;
+            if (isTaken(part.jobIds)) {
+                held.add(new Held(job, key, numericKey));
+                take(part.jobIds);
+                return null;
+            }
+            take(part.jobIds);
+            Runnable last = part.owner().arrive(this);
+            if (last == null)
+                stats.recordJob();
+            return last;
+        }
+        String jobId = key == null ? Long.toString(numericKey) : key == Lane.POOL_JOB ? null : (String) key;
+        if (jobId != null && taken.containsKey(jobId)) {
+            held.add(new Held(job, key, numericKey));
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Releases a part of this lane, called by the lane that ran its job. Wakes the lane thread, whatever its wait
+     * strategy.
+     */
+    void release(MultiKeyJob.Part part) {
+        released.add(part);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return whether parts released by other lanes wait for {@link #releaseAll()}
+     */
+    boolean hasReleases() {
+        return !released.isEmpty();
+    }
+
+    /**
+     * Gives back the job ids of the parts released by other lanes and runs the jobs no longer held back.
+     */
+    void releaseAll() {
+        MultiKeyJob.Part part;
+        while ((part = released.poll()) != null) {
+            give(part.jobIds);
+        }
+        runHeld();
+    }
+
+    /**
+     * Gives back the job ids of a part of this lane, whose job has just run on it, and runs the jobs no longer held
+     * back.
+     */
+    void releaseLocally(MultiKeyJob.Part part) {
+        give(part.jobIds);
+        runHeld();
+    }
+
+    /**
+     * Looks at every job set aside again, in order. A part reached here may run its job, releasing parts of this
+     * lane and running further jobs from within, which only ever see jobs set aside before it.
+     */
+    private void runHeld() {
+        if (held.isEmpty())
+            return;
+        ArrayDeque<Held> pending = held;
+        held = new ArrayDeque<>();
+        for (Held h : pending) {
+            if (h.job instanceof MultiKeyJob.Part)
+                give(((MultiKeyJob.Part) h.job).jobIds);
+        }
+        Held h;
+        while ((h = pending.poll()) != null) {
+            Runnable job = admit(h.job, h.key, h.numericKey);
+            if (job == null)
+                continue;
+            try {
+                job.run();
+            } catch (Throwable t) {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+            Thread.interrupted();
+            stats.recordJob();
+        }
+    }
+
+    /**
+     * Hands the jobs set aside over to a shutdown now, and forgets every job id held back.
+     *
+     * @param jobs receives the jobs in queue order
+     * @param keys receives the job id of each job: its string, or {@link Lane#POOL_JOB} for parts
+     * @return number of jobs handed over
+     */
+    int abandon(List<Runnable> jobs, List<Object> keys) {
+        int n = held.size();
+        for (Held h : held) {
+            jobs.add(h.job);
+            keys.add(h.key == null ? Long.toString(h.numericKey) : h.key);
+        }
+        held.clear();
+        taken.clear();
+        released.clear();
+        return n;
+    }
+
+    private boolean isTaken(String[] jobIds) {
+        if (taken.isEmpty())
+            return false;
+        for (String jobId : jobIds) {
+            if (taken.containsKey(jobId))
+                return true;
+        }
+        return false;
+    }
+
+    private void take(String[] jobIds) {
+        for (String jobId : jobIds) {
+            taken.merge(jobId, 1, Integer::sum);
+        }
+    }
+
+    private void give(String[] jobIds) {
+        for (String jobId : jobIds) {
+            taken.computeIfPresent(jobId, (id, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    /**
+     * A job set aside, with its job id as queued.
+     */
+    private static final class Held {
+
+        final Runnable job;
+        final Object key;
+        final long numericKey;
+
+        Held(Runnable job, Object key, long numericKey) {
+            this.job = job;
+            this.key = key;
+            this.numericKey = numericKey;
+        }
+    }
+}
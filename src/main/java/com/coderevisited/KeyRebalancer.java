@@ -0,0 +1,425 @@
+package com.coderevisited;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Moves hot job ids from overloaded lanes to lightly loaded ones, without breaking the order of their jobs.
+ * <p>
+ * Every job id seen recently has a {@link Placement} recording its current lane and the number of jobs submitted
+ * for it since the last rebalancing round. At every round the load of each lane is summed up from its placements
+ * and, while the hottest lane carries more than {@code threshold} times the average load, one of its job ids is
+ * moved to the coldest lane. The job id picked is the one whose load best closes the gap between the two lanes.
+ * <p>
+ * A move goes through three steps, each guarded by the placement's monitor:
+ * <ol>
+ * <li>the placement starts holding: new jobs of the job id are queued on the placement instead of a lane, and once
+ * the submitters already on their way to the old lane are done, a fence job is queued on the old lane behind every
+ * job accepted for the job id;</li>
+ * <li>the fence runs once those jobs have run, and queues a drain job on the new lane. The fence never waits for
+ * room: if the new lane is full the move is given up, and the fence runs the held jobs on the old lane
+ * instead;</li>
+ * <li>the drain job takes the held jobs and points the placement at the new lane at once, then runs them in order.
+ * Jobs submitted from then on are queued on the new lane behind the drain job.</li>
+ * </ol>
+ * Jobs of the job id therefore never run on the new lane before all its jobs on the old lane have completed.
+ * <p>
+ * Placements of job ids that received no job during a whole round and still sit on the lane chosen by the router
+ * are forgotten, so only active job ids and moved job ids are tracked.
+ */
+final class KeyRebalancer {
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final int lanes;
+    private final double threshold;
+    private final ConcurrentMap<String, Placement> placements = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Object moveLock = new Object();
+    /**
+     * Number of moves started and not yet drained, guarded by moveLock.
+     */
+    private int pendingMoves;
+
+    /**
+     * @param pool      pool whose lanes run the jobs, and whose router gives the initial lane of a job id
+     * @param lanes     number of lanes
+     * @param threshold ratio of the hottest lane load to the average load above which job ids are moved
+     * @param interval  time between two rebalancing rounds, in nanoseconds
+     * @param name      name of the rebalancing thread
+     */
+    KeyRebalancer(ThreadPoolWithJobAffinityExecutor pool, int lanes, double threshold, long interval,
+                  final String name) {
+        this.pool = pool;
+        this.lanes = lanes;
+        this.threshold = threshold;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                rebalance();
+            }
+        }, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Routes a job to the current lane of its job id, or holds it while the job id is being moved.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    void submit(String jobId, Runnable job) {
+        route(jobId, job, false);
+    }
+
+    /**
+     * Routes a job like {@link #submit(String, Runnable)}, but never waits for room in a full lane.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return false if the current lane of the job id is full
+     */
+    boolean offer(String jobId, Runnable job) {
+        return route(jobId, job, true);
+    }
+
+    private boolean route(String jobId, Runnable job, boolean offer) {
+        for (; ; ) {
+            Placement placement = placements.get(jobId);
+            if (placement == null) {
+                Placement created = new Placement(jobId, pool.getPool(jobId));
+                placement = placements.putIfAbsent(jobId, created);
+                if (placement == null)
+                    placement = created;
+            }
+            int lane;
+            synchronized (placement) {
+                if (placement.retired)
+                    continue;
+                placement.load++;
+                if (placement.held != null) {
+                    placement.held.add(job);
+                    return true;
+                }
+                lane = placement.lane;
+                //a move starting now waits for this job to be queued before fencing the lane
+                placement.submitting++;
+            }
+            try {
+                if (offer)
+                    return pool.offerOnLane(lane, jobId, job);
+                pool.submitToLane(lane, jobId, job);
+            } finally {
+                synchronized (placement) {
+                    if (--placement.submitting == 0 && placement.held != null)
+                        placement.notifyAll();
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param jobId job id
+     * @return lane currently running the jobs of the given job id
+     */
+    int laneOf(String jobId) {
+        Placement placement = placements.get(jobId);
+        if (placement != null) {
+            synchronized (placement) {
+                if (!placement.retired)
+                    return placement.held != null ? placement.target : placement.lane;
+            }
+        }
+        return pool.getPool(jobId);
+    }
+
+    /**
+     * Stops rebalancing. Waits for a round in progress, so no move starts after this method returns, then for the
+     * moves already started to drain, so that the lanes they involve can be shut down.
+     */
+    void shutdown() {
+        stop();
+        boolean interrupted = false;
+        synchronized (moveLock) {
+            while (pendingMoves > 0) {
+                try {
+                    moveLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Stops rebalancing. Waits for a round in progress, so no move starts after this method returns, but not for
+     * the moves already started.
+     */
+    void stop() {
+        scheduler.shutdown();
+        boolean interrupted = false;
+        for (; ; ) {
+            try {
+                if (scheduler.awaitTermination(10000, TimeUnit.MILLISECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Gives up a move whose fence or drain job was queued on a lane and never ran, after the lanes have been shut
+     * down with {@link ThreadPoolWithJobAffinityExecutor#shutdownNow()}. The jobs held for the job id are added
+     * to its un-run jobs, behind those given up by its old lane.
+     *
+     * @param hop   job of the pool given up by a lane
+     * @param unrun un-run jobs by job id
+     */
+    void abandon(Runnable hop, Map<String, List<Runnable>> unrun) {
+        if (!(hop instanceof Hop))
+            return;
+        Placement placement = ((Hop) hop).placement;
+        synchronized (placement) {
+            if (!placement.held.isEmpty())
+                unrun.computeIfAbsent(placement.jobId, key -> new ArrayList<>()).addAll(placement.held);
+            placement.lane = placement.target;
+            placement.held = null;
+        }
+        synchronized (moveLock) {
+            pendingMoves--;
+            moveLock.notifyAll();
+        }
+    }
+
+    /**
+     * One rebalancing round.
+     *
+     * @return number of job ids moved
+     */
+    synchronized int rebalance() {
+        long[] laneLoads = new long[lanes];
+        List<List<Placement>> laneKeys = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            laneKeys.add(new ArrayList<Placement>());
+        }
+        long total = 0;
+        for (Placement placement : placements.values()) {
+            synchronized (placement) {
+                long load = placement.load;
+                placement.load = 0;
+                placement.lastLoad = load;
+                if (placement.held != null) {
+                    laneLoads[placement.target] += load;
+                } else if (load == 0 && placement.lane == pool.getPool(placement.jobId)) {
+                    placement.retired = true;
+                    placements.remove(placement.jobId, placement);
+                } else {
+                    laneLoads[placement.lane] += load;
+                    laneKeys.get(placement.lane).add(placement);
+                }
+                total += load;
+            }
+        }
+        if (total == 0)
+            return 0;
+
+        double average = (double) total / lanes;
+        int moved = 0;
+        for (int round = 0; round < lanes; round++) {
+            int hot = 0;
+            int cold = 0;
+            for (int i = 1; i < lanes; i++) {
+                if (laneLoads[i] > laneLoads[hot])
+                    hot = i;
+                if (laneLoads[i] < laneLoads[cold])
+                    cold = i;
+            }
+            if (laneLoads[hot] <= threshold * average)
+                break;
+            long gap = laneLoads[hot] - laneLoads[cold];
+            Placement best = null;
+            for (Placement candidate : laneKeys.get(hot)) {
+                //moving a job id carrying the whole gap or more only moves the hot spot
+                if (candidate.lastLoad > 0 && candidate.lastLoad < gap
+                        && (best == null || Math.abs(gap - 2 * candidate.lastLoad) < Math.abs(gap - 2 * best.lastLoad)))
+                    best = candidate;
+            }
+            if (best == null || !move(best, cold))
+                break;
+            laneKeys.get(hot).remove(best);
+            laneLoads[hot] -= best.lastLoad;
+            laneLoads[cold] += best.lastLoad;
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Starts moving a job id to another lane.
+     *
+     * @return false if the placement can no longer be moved
+     */
+    private boolean move(final Placement placement, int target) {
+        final int source;
+        boolean interrupted = false;
+        synchronized (placement) {
+            if (placement.retired || placement.held != null)
+                return false;
+            source = placement.lane;
+            placement.target = target;
+            placement.held = new ArrayList<>();
+            //jobs being queued on the old lane must be ahead of the fence
+            while (placement.submitting > 0) {
+                try {
+                    placement.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        synchronized (moveLock) {
+            pendingMoves++;
+        }
+        try {
+            pool.putOnLane(source, new Hop(placement, true));
+        } catch (RejectedExecutionException e) {
+            //the pool is shutting down, the old lane still runs everything it accepted, so drain right behind it
+            pool.awaitLane(source);
+            drain(placement, true);
+        }
+        return true;
+    }
+
+    /**
+     * Runs on the old lane once every job accepted there for the job id has completed. A lane thread must not wait
+     * for room on another lane, which may itself be waiting for room on this one, so a full new lane gives the move
+     * up.
+     */
+    private void fence(final Placement placement) {
+        try {
+            if (pool.offerOnLane(placement.target, new Hop(placement, false)))
+                return;
+        } catch (RejectedExecutionException e) {
+            //the new lane is shut down already
+        }
+        //the old lane is the only place left to keep the order
+        drain(placement, false);
+    }
+
+    /**
+     * Points a job id at its new lane, or back at its old lane if the move is given up, then runs the jobs held
+     * until then in order. The jobs are taken at the same time as the lane changes, so a hot job id can not keep the
+     * lane inside this job with new jobs, which queue on the lane behind it instead.
+     *
+     * @param moved whether the job id moves to its new lane
+     */
+    private void drain(Placement placement, boolean moved) {
+        List<Runnable> jobs;
+        synchronized (placement) {
+            jobs = placement.held;
+            if (moved)
+                placement.lane = placement.target;
+            placement.held = null;
+        }
+        for (Runnable job : jobs) {
+            try {
+                job.run();
+            } catch (Throwable t) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+        synchronized (moveLock) {
+            pendingMoves--;
+            moveLock.notifyAll();
+        }
+    }
+
+    /**
+     * Fence or drain job of a move, queued on a lane.
+     */
+    private final class Hop implements Runnable {
+
+        final Placement placement;
+        final boolean fence;
+
+        Hop(Placement placement, boolean fence) {
+            this.placement = placement;
+            this.fence = fence;
+        }
+
+        @Override
+        public void run() {
+            if (fence)
+                fence(placement);
+            else
+                drain(placement, true);
+        }
+    }
+
+    /**
+     * Where the jobs of one job id go. Guarded by its own monitor.
+     */
+    private static final class Placement {
+
+        final String jobId;
+        int lane;
+        /**
+         * Lane the job id is moving to, meaningful while held is not null.
+         */
+        int target;
+        /**
+         * Jobs submitted while the job id is moving, null when it is not.
+         */
+        List<Runnable> held;
+        /**
+         * Submitters queueing a job on the lane of the job id, outside of the monitor.
+         */
+        int submitting;
+        /**
+         * Jobs submitted since the last round.
+         */
+        long load;
+        /**
+         * Jobs submitted during the last round.
+         */
+        long lastLoad;
+        /**
+         * Set once the placement has been forgotten, submitters must look it up again.
+         */
+        boolean retired;
+
+        Placement(String jobId, int lane) {
+            this.jobId = jobId;
+            this.lane = lane;
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package com.coderevisited;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * A single lane of the pool. Every job routed to a lane is executed by the lane's only thread,
+ * in the order in which it was submitted.
+ * <p>
+ * Jobs are queued in a bounded {@link MpscRingBuffer} and run as they are, without a future wrapped around them.
+ * The lane thread drains the buffer in batches and waits according to its {@link WaitStrategy} when it finds it
+ * empty. Producers only unpark the lane thread when it has announced that it parks. What a producer finding the buffer
+ * full does depends on the lane's {@link OverflowPolicy}. Under {@link OverflowPolicy#CALLER_RUNS} and
+ * {@link OverflowPolicy#DROP_OLDEST} producers may consume from the buffer too, so consuming requires holding the
+ * consumer flag of the lane: while taking a batch and running it under caller-runs, only while taking it under
+ * drop-oldest. Under the other policies the lane thread is the only consumer and never touches the flag.
+ * <p>
+ * When the lane's {@link LaneStats} are timed, or it has a {@link FlightRecorder}, producers stamp each job with its
+ * submission time and the lane thread records how long every job waited and ran, reusing the end time of one job as
+ * the start time of the next. The same timestamps feed the flight recorder and the {@link SlowJobEvent}s.
+ * <p>
+ * Every job is queued along with its job id, so that the jobs a lane gives up on {@link #shutdownNow()} can be
+ * handed back by job id. A numeric job id is kept as a long, with a null key, so queuing it allocates nothing.
+ */
+final class Lane implements Runnable {
+
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * Maximum number of jobs taken off the buffer at a time.
+     */
+    static final int BATCH_SIZE = 64;
+
+    /**
+     * Maximum nesting of jobs run inline by {@link #runInline(Runnable)}, beyond which they are queued instead.
+     */
+    static final int MAX_INLINE_DEPTH = 16;
+
+    /**
+     * Placed in a lane slot once the pool is shut down, so that no lane can be created for that slot afterwards.
+     */
+    static final Lane TERMINATED = new Lane("terminated", 1, new LaneStats(false), null, 0L, OverflowPolicy.REJECT,
+            0L, WaitStrategy.blocking());
+
+    /**
+     * Block timeout meaning that submitters wait for room as long as it takes.
+     */
+    static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    /**
+     * Key of the jobs of the pool itself, queued with {@link #put(Runnable)}.
+     */
+    static final Object POOL_JOB = new Object();
+
+    private static final AtomicInteger poolNumber = new AtomicInteger(1);
+
+    private static final AtomicIntegerFieldUpdater<Lane> CONSUMING =
+            AtomicIntegerFieldUpdater.newUpdater(Lane.class, "consuming");
+
+    private final MpscRingBuffer<Runnable> queue;
+    private final LaneStats stats;
+    private final FlightRecorder recorder;
+    private final long slowJobNanos;
+    /**
+     * Whether jobs are timed, for the metrics, the flight recorder or slow job events.
+     */
+    private final boolean timed;
+    private final boolean statsTimed;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final boolean sharedConsumer;
+    private final WaitStrategy waitStrategy;
+    private final Thread thread;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    /**
+     * Used by whoever consumes the buffer, the lane thread or a submitter holding the consumer flag.
+     */
+    private final Runnable[] batch = new Runnable[BATCH_SIZE];
+    private final long[] submittedAt;
+    private final Object[] batchKeys = new Object[BATCH_SIZE];
+    private final long[] batchNumericKeys = new long[BATCH_SIZE];
+    /**
+     * Receives the job discarded under drop-oldest, while the lane thread may still be running its batch.
+     */
+    private final Runnable[] oldest = new Runnable[1];
+    /**
+     * 1 while a thread consumes the buffer, only used when consumers are shared.
+     */
+    private volatile int consuming;
+    /**
+     * Set by the lane thread while it parks, or is about to. Producers skip the unpark while it is clear.
+     */
+    private volatile boolean parked;
+    /**
+     * Jobs of the current batch not yet started. Only read by the lane thread, from the jobs it runs.
+     */
+    private int batchRemaining;
+    /**
+     * Nesting of jobs run inline on the lane thread.
+     */
+    private int inlineDepth;
+    /**
+     * Set by {@link #shutdownNow()}: the consumer gives up the jobs not yet started instead of running them.
+     */
+    private volatile boolean abandoning;
+    /**
+     * Jobs given up, with their job ids. Filled by the consumer, read once the lane has terminated.
+     */
+    private final List<Runnable> abandonedJobs = new ArrayList<>();
+    private final List<Object> abandonedKeys = new ArrayList<>();
+    /**
+     * Job ids held back by multi-key jobs queued on this lane.
+     */
+    private final KeyGate gate;
+
+    private Lane(String name, int capacity, LaneStats stats, FlightRecorder recorder, long slowJobNanos,
+                 OverflowPolicy overflowPolicy, long blockTimeoutNanos, WaitStrategy waitStrategy) {
+        this.statsTimed = stats.isTimed();
+        this.timed = statsTimed || recorder != null;
+        this.queue = new MpscRingBuffer<>(capacity, timed, true);
+        this.stats = stats;
+        this.recorder = recorder;
+        this.slowJobNanos = timed ? slowJobNanos : 0L;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.sharedConsumer = overflowPolicy == OverflowPolicy.CALLER_RUNS
+                || overflowPolicy == OverflowPolicy.DROP_OLDEST;
+        this.waitStrategy = waitStrategy;
+        this.submittedAt = timed ? new long[BATCH_SIZE] : null;
+        this.thread = new Thread(this, name);
+        this.gate = new KeyGate(stats, thread);
+    }
+
+    /**
+     * Creates a lane whose thread is not yet started.
+     *
+     * @param name              name of the lane thread
+     * @param capacity          maximum number of queued jobs
+     * @param stats             metrics of the lane
+     * @param recorder          flight recorder of the lane, null for none
+     * @param slowJobNanos      run time from which a job is reported as a {@link SlowJobEvent}, 0 for never. Only
+     *                          applies to lanes timing their jobs.
+     * @param overflowPolicy    what a submitter does when the lane is full
+     * @param blockTimeoutNanos longest wait of a submitter for room, {@link #NO_TIMEOUT} to wait as long as it takes
+     * @param waitStrategy      how the lane thread waits for jobs
+     * @return the lane
+     */
+    static Lane newLane(String name, int capacity, LaneStats stats, FlightRecorder recorder, long slowJobNanos,
+                        OverflowPolicy overflowPolicy, long blockTimeoutNanos, WaitStrategy waitStrategy) {
+        return new Lane(name, capacity, stats, recorder, slowJobNanos, overflowPolicy, blockTimeoutNanos,
+                waitStrategy);
+    }
+
+    /**
+     * @return name of a newly created pool, prefix of its lane thread names
+     */
+    static String nextPoolName() {
+        return "affinity-pool-" + poolNumber.getAndIncrement();
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues the given job on this lane. Applies the overflow policy of the lane if it is full.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down, or is full and the policy or the block
+     *                                    timeout refuses the job
+     */
+    void submit(String jobId, Runnable job) {
+        enqueue(job, jobId, 0L, overflowPolicy, blockTimeoutNanos);
+    }
+
+    /**
+     * Queues the given job of a numeric job id on this lane, see {@link #submit(String, Runnable)}.
+     *
+     * @param jobId a numeric job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    void submit(long jobId, Runnable job) {
+        enqueue(job, null, jobId, overflowPolicy, blockTimeoutNanos);
+    }
+
+    /**
+     * Queues a job of the pool itself on this lane. Waits for room as long as it takes if the lane is full,
+     * whatever the overflow policy.
+     *
+     * @param job a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    void put(Runnable job) {
+        enqueue(job, POOL_JOB, 0L, OverflowPolicy.BLOCK, NO_TIMEOUT);
+    }
+
+    /**
+     * Queues a job the pool has already accepted, for instance one held while its job id was moved. Waits for room
+     * as long as it takes, whatever the overflow policy.
+     *
+     * @param jobId        a string containing job id, null for a numeric job id
+     * @param numericJobId the numeric job id, when jobId is null
+     * @param job          a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    void put(String jobId, long numericJobId, Runnable job) {
+        enqueue(job, jobId, numericJobId, OverflowPolicy.BLOCK, NO_TIMEOUT);
+    }
+
+    /**
+     * Queues a job of the pool itself on this lane if it has room, without waiting and whatever the overflow policy.
+     * For threads that must not block on a full lane, such as lane threads queueing on another lane.
+     *
+     * @param job a Runnable representing the job to be executed.
+     * @return false if the lane is full
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    boolean offer(Runnable job) {
+        return offer(job, POOL_JOB, 0L);
+    }
+
+    /**
+     * Queues a job the pool has already accepted if this lane has room, without waiting and whatever the overflow
+     * policy. For the timer thread, which must not block on a full lane.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return false if the lane is full
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    boolean offer(String jobId, Runnable job) {
+        return offer(job, jobId, 0L);
+    }
+
+    private boolean offer(Runnable job, Object key, long numericKey) {
+        int result = queue.offer(job, key, numericKey, timed ? System.nanoTime() : 0L);
+        if (result == MpscRingBuffer.OFFERED) {
+            signal();
+            return true;
+        }
+        if (result == MpscRingBuffer.CLOSED) {
+            stats.recordRejection();
+            throw new RejectedExecutionException("Thread pool is terminated");
+        }
+        return false;
+    }
+
+    /**
+     * Runs the given job at once if called from a job running on the lane thread, and no job is waiting behind
+     * the running one, neither in its batch nor in the buffer. Queuing the job would then run it next on the same
+     * thread anyway, so running it inline keeps the order of the lane. A job that throws is reported to the
+     * uncaught exception handler of the lane thread, as if it had been queued. The job is not counted in the metrics
+     * of the lane on its own, its run time is part of the job that ran it.
+     *
+     * @param job a Runnable representing the job to be executed.
+     * @return whether the job has run, false if it must be queued
+     */
+    boolean runInline(Runnable job) {
+        if (Thread.currentThread() != thread || batchRemaining != 0 || inlineDepth >= MAX_INLINE_DEPTH
+                || !queue.isEmpty() || queue.isClosed() || gate.isHolding())
+            return false;
+        inlineDepth++;
+        try {
+            job.run();
+        } catch (Throwable t) {
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        } finally {
+            inlineDepth--;
+        }
+        return true;
+    }
+
+    /**
+     * Queues the given jobs on this lane in order, claiming room for as many of them at a time as fit and waking
+     * the lane thread once. Applies the overflow policy of the lane while it is full.
+     *
+     * @param jobs          array holding the jobs
+     * @param jobIds        array holding the job ids of the jobs, null for numeric ones
+     * @param numericJobIds array holding the numeric job ids of the jobs
+     * @param from          index of the first job
+     * @param count         number of jobs
+     * @throws RejectedExecutionException if the lane has been shut down, or is full and the policy or the block
+     *                                    timeout refuses the jobs. The jobs not queued are the last ones.
+     */
+    void submitAll(Runnable[] jobs, String[] jobIds, long[] numericJobIds, int from, int count) {
+        int idle = 0;
+        long fullSince = 0L;
+        while (count > 0) {
+            int n = queue.offer(jobs, jobIds, numericJobIds, from, count, timed ? System.nanoTime() : 0L);
+            if (n < 0) {
+                stats.recordRejections(count);
+                throw new RejectedExecutionException("Thread pool is terminated");
+            }
+            if (n > 0) {
+                from += n;
+                count -= n;
+                idle = 0;
+                continue;
+            }
+            if (makeRoom(overflowPolicy, count))
+                continue;
+            if (idle == 0 && blockTimeoutNanos != NO_TIMEOUT)
+                fullSince = System.nanoTime();
+            backOff(idle++, fullSince, blockTimeoutNanos, count);
+        }
+        signal();
+    }
+
+    /**
+     * Queues as many of the given jobs as this lane has room for, in order, without waiting and whatever the
+     * overflow policy. For the timer thread, which must not block on a full lane.
+     *
+     * @param jobs          array holding the jobs
+     * @param jobIds        array holding the job ids of the jobs, null for numeric ones
+     * @param numericJobIds array holding the numeric job ids of the jobs
+     * @param from          index of the first job
+     * @param count         number of jobs
+     * @return number of jobs queued, the first ones
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    int offerAll(Runnable[] jobs, String[] jobIds, long[] numericJobIds, int from, int count) {
+        int queued = 0;
+        while (queued < count) {
+            int n = queue.offer(jobs, jobIds, numericJobIds, from + queued, count - queued,
+                    timed ? System.nanoTime() : 0L);
+            if (n < 0) {
+                stats.recordRejections(count - queued);
+                throw new RejectedExecutionException("Thread pool is terminated");
+            }
+            if (n == 0)
+                break;
+            queued += n;
+        }
+        if (queued > 0)
+            signal();
+        return queued;
+    }
+
+    private void enqueue(Runnable job, Object key, long numericKey, OverflowPolicy policy, long timeoutNanos) {
+        int idle = 0;
+        long fullSince = 0L;
+        for (; ; ) {
+            int result = queue.offer(job, key, numericKey, timed ? System.nanoTime() : 0L);
+            if (result == MpscRingBuffer.OFFERED) {
+                signal();
+                return;
+            }
+            if (result == MpscRingBuffer.CLOSED) {
+                stats.recordRejection();
+                throw new RejectedExecutionException("Thread pool is terminated");
+            }
+            if (makeRoom(policy, 1))
+                continue;
+            if (idle == 0 && timeoutNanos != NO_TIMEOUT)
+                fullSince = System.nanoTime();
+            backOff(idle++, fullSince, timeoutNanos, 1);
+        }
+    }
+
+    /**
+     * Applies the overflow policy to a full lane.
+     *
+     * @param pending number of jobs waiting for room, rejected altogether under {@link OverflowPolicy#REJECT}
+     * @return true if room may have been made
+     */
+    private boolean makeRoom(OverflowPolicy policy, int pending) {
+        switch (policy) {
+            case REJECT:
+                stats.recordRejections(pending);
+                throw new RejectedExecutionException("Lane " + thread.getName() + " is full");
+            case DROP_OLDEST:
+                return dropOldest();
+            case CALLER_RUNS:
+                return runOldest();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gives the lane thread a chance to catch up with a full lane, unless the block timeout has expired.
+     *
+     * @param idle      number of times the caller already backed off since the lane was found full
+     * @param fullSince time the lane was found full, when there is a timeout
+     * @param pending   number of jobs waiting for room, rejected altogether once the timeout has expired
+     */
+    private void backOff(int idle, long fullSince, long timeoutNanos, int pending) {
+        if (idle > 0 && timeoutNanos != NO_TIMEOUT && System.nanoTime() - fullSince >= timeoutNanos) {
+            stats.recordRejections(pending);
+            throw new RejectedExecutionException("Lane " + thread.getName() + " is still full after "
+                    + timeoutNanos + "ns");
+        }
+        LockSupport.unpark(thread);
+        if (idle < 100)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(100000L);
+    }
+
+    /**
+     * Discards the oldest queued job, unless another thread is consuming the buffer.
+     *
+     * @return true if room may have been made
+     */
+    private boolean dropOldest() {
+        if (!CONSUMING.compareAndSet(this, 0, 1))
+            return false;
+        try {
+            if (queue.drainTo(oldest) == 1) {
+                //whoever waits for the result of a discarded job learns that it will never run
+                if (oldest[0] instanceof Future)
+                    ((Future<?>) oldest[0]).cancel(false);
+                //a conflated job still taking merges would swallow them
+                Conflator.discarded(oldest[0]);
+                oldest[0] = null;
+                stats.recordDrop();
+            }
+        } finally {
+            consuming = 0;
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Runs a batch of the oldest queued jobs in the calling thread, unless another thread is consuming the buffer.
+     * The interrupt status of the caller survives the jobs.
+     *
+     * @return true if room may have been made
+     */
+    private boolean runOldest() {
+        if (!CONSUMING.compareAndSet(this, 0, 1))
+            return false;
+        boolean interrupted = Thread.interrupted();
+        try {
+            runBatch(drain());
+        } finally {
+            consuming = 0;
+            //the lane thread may have parked while this thread held the flag
+            LockSupport.unpark(thread);
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Wakes the lane thread up after a job has been queued, if it parks. The flag is read after the job has been
+     * published, and the lane thread looks at the buffer after setting the flag, so one of them sees the other.
+     */
+    private void signal() {
+        if (parked)
+            LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return gate of this lane, for the parts of multi-key jobs queued on it
+     */
+    KeyGate gate() {
+        return gate;
+    }
+
+    /**
+     * Called by the lane thread, through its wait strategy, to park until a job is queued, a multi-key job releases
+     * job ids of this lane, or the lane is shut down.
+     */
+    void park() {
+        parked = true;
+        //a job published before the flag was set came without an unpark, look for it before parking
+        if (queue.isEmpty() && !gate.hasReleases()) {
+            if (!queue.isClosed())
+                LockSupport.park(this);
+            else if (gate.isHolding())
+                //shut down, with jobs held back until another lane runs a multi-key job
+                LockSupport.parkNanos(this, 100000L);
+        }
+        parked = false;
+    }
+
+    /**
+     * Stops accepting jobs. Jobs already queued are still executed.
+     */
+    void shutdown() {
+        queue.close();
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops accepting jobs and gives up those not yet started. The consumer finishes the job it is running, which is
+     * interrupted, and moves every job left behind it to the abandoned jobs of the lane, in queue order.
+     */
+    void shutdownNow() {
+        abandoning = true;
+        queue.close();
+        thread.interrupt();
+    }
+
+    /**
+     * Waits for the lane to terminate, for no longer than the given time.
+     *
+     * @return whether the lane has terminated
+     */
+    boolean awaitTermination(long timeoutNanos) throws InterruptedException {
+        return terminated.await(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * Hands the jobs given up after {@link #shutdownNow()} over to the caller, once. Must be called after the lane
+     * has terminated.
+     *
+     * @param jobs receives the jobs in queue order
+     * @param keys receives the job id of each job: its string, or {@link #POOL_JOB} for the jobs of the pool
+     */
+    synchronized void takeAbandoned(List<Runnable> jobs, List<Object> keys) {
+        jobs.addAll(abandonedJobs);
+        keys.addAll(abandonedKeys);
+        abandonedJobs.clear();
+        abandonedKeys.clear();
+    }
+
+    /**
+     * Blocks until all jobs queued on this lane have been executed after a shutdown request.
+     */
+    void awaitTermination() {
+        boolean terminated = false;
+        boolean interrupted = false;
+        while (!terminated) {
+            try {
+                terminated = this.terminated.await(10000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @return number of jobs waiting in this lane
+     */
+    int queueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of jobs accepted by this lane
+     */
+    long submitted() {
+        return queue.claimed();
+    }
+
+    /**
+     * Lane thread loop. A job that throws is reported to the thread's uncaught exception handler and the lane
+     * carries on with the next job.
+     */
+    @Override
+    public void run() {
+        int idle = 0;
+        try {
+            for (; ; ) {
+                if (sharedConsumer && !CONSUMING.compareAndSet(this, 0, 1)) {
+                    //a submitter is consuming, it unparks this thread when done
+                    LockSupport.parkNanos(this, 100000L);
+                    continue;
+                }
+                if (abandoning)
+                    abandonHeld();
+                else if (gate.hasReleases())
+                    gate.releaseAll();
+                int n = drain();
+                if (n == 0) {
+                    boolean done = queue.isClosed() && queue.isEmpty() && !gate.isHolding();
+                    if (sharedConsumer)
+                        consuming = 0;
+                    if (done)
+                        return;
+                    idle = waitStrategy.idle(this, idle);
+                    continue;
+                }
+                idle = 0;
+                if (abandoning) {
+                    abandon(0, n);
+                    if (sharedConsumer)
+                        consuming = 0;
+                    continue;
+                }
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST)
+                    consuming = 0;
+                try {
+                    runBatch(n);
+                } finally {
+                    if (overflowPolicy == OverflowPolicy.CALLER_RUNS)
+                        consuming = 0;
+                }
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Takes the next batch of jobs, with their submission times and job ids. Called by the current consumer only.
+     *
+     * @return number of jobs in the batch array
+     */
+    private int drain() {
+        return queue.drainTo(batch, submittedAt, batchKeys, batchNumericKeys);
+    }
+
+    /**
+     * Moves the jobs held back by multi-key jobs to the abandoned jobs and counts them as dropped. Called by the
+     * current consumer only.
+     */
+    private void abandonHeld() {
+        if (!gate.isHolding())
+            return;
+        synchronized (this) {
+            for (int i = gate.abandon(abandonedJobs, abandonedKeys); i > 0; i--) {
+                stats.recordDrop();
+            }
+        }
+    }
+
+    /**
+     * Moves jobs of the batch array to the abandoned jobs and counts them as dropped. Called by the current
+     * consumer only.
+     *
+     * @param from index of the first job to give up
+     * @param n    number of jobs in the batch array
+     */
+    private void abandon(int from, int n) {
+        synchronized (this) {
+            for (int i = from; i < n; i++) {
+                Object key = batchKeys[i];
+                abandonedJobs.add(batch[i]);
+                abandonedKeys.add(key == null ? Long.toString(batchNumericKeys[i]) : key);
+                batch[i] = null;
+                batchKeys[i] = null;
+                stats.recordDrop();
+            }
+        }
+    }
+
+    /**
+     * Runs the first jobs of the batch array in order and records them. Called by the current consumer only.
+     *
+     * @param n number of jobs in the batch array
+     */
+    private void runBatch(int n) {
+        long start = timed ? System.nanoTime() : 0L;
+        for (int i = 0; i < n; i++) {
+            Runnable job = batch[i];
+            Object key = batchKeys[i];
+            batch[i] = null;
+            batchKeys[i] = null;
+            batchRemaining = n - i - 1;
+            if (job instanceof MultiKeyJob.Part || gate.isHolding()) {
+                job = gate.admit(job, key, batchNumericKeys[i]);
+                //held back, or a part whose job runs on another lane
+                if (job == null)
+                    continue;
+            }
+            int entry = recorder == null ? 0 : recorder.start(hash(key, batchNumericKeys[i]), submittedAt[i], start);
+            try {
+                job.run();
+            } catch (Throwable t) {
+                Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                handler.uncaughtException(thread, t);
+            }
+            //an interrupt raised by one job must not leak into the next one, nor keep park from blocking
+            Thread.interrupted();
+            if (timed) {
+                long end = System.nanoTime();
+                if (recorder != null)
+                    recorder.end(entry, end);
+                if (statsTimed)
+                    stats.recordTimedJob(start - submittedAt[i], end - start);
+                else
+                    stats.recordJob();
+                if (slowJobNanos != 0 && end - start >= slowJobNanos)
+                    reportSlowJob(key, batchNumericKeys[i], start - submittedAt[i], end - start);
+                start = end;
+            } else {
+                stats.recordJob();
+            }
+            if (abandoning && i + 1 < n) {
+                batchRemaining = 0;
+                abandonHeld();
+                abandon(i + 1, n);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return hash of a job id as queued: its string hash, the one of its decimal string if numeric, 0 for the jobs
+     * of the pool
+     */
+    private static int hash(Object key, long numericKey) {
+        if (key == null)
+            return LaneRouters.decimalHashCode(numericKey);
+        return key == POOL_JOB ? 0 : key.hashCode();
+    }
+
+    private void reportSlowJob(Object key, long numericKey, long waited, long ran) {
+        String jobId = key == null ? Long.toString(numericKey) : key == POOL_JOB ? null : (String) key;
+        SlowJobEvent.emit(jobId, thread.getName(), waited, ran);
+    }
+}
@@ -0,0 +1,98 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Point in time snapshot of the metrics of one lane, see {@link ThreadPoolWithJobAffinityExecutor#metrics()}.
+ * Counts are cumulative since the pool was created.
+ */
+public final class LaneMetrics {
+
+    private final int lane;
+    private final long submitted;
+    private final long completed;
+    private final long rejected;
+    private final long dropped;
+    private final int queueDepth;
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram runTime;
+
+    LaneMetrics(int lane, long submitted, long completed, long rejected, long dropped, int queueDepth,
+                LatencyHistogram queueWait, LatencyHistogram runTime) {
+        this.lane = lane;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.rejected = rejected;
+        this.dropped = dropped;
+        this.queueDepth = queueDepth;
+        this.queueWait = queueWait;
+        this.runTime = runTime;
+    }
+
+    /**
+     * @return index of the lane in the pool
+     */
+    public int lane() {
+        return lane;
+    }
+
+    /**
+     * @return number of jobs accepted by the lane
+     */
+    public long submitted() {
+        return submitted;
+    }
+
+    /**
+     * @return number of jobs that have finished running, including those that threw
+     */
+    public long completed() {
+        return completed;
+    }
+
+    /**
+     * @return number of jobs refused by the lane
+     */
+    public long rejected() {
+        return rejected;
+    }
+
+    /**
+     * @return number of jobs accepted by the lane and then discarded under {@link OverflowPolicy#DROP_OLDEST}, or
+     * given back unrun by {@link ThreadPoolWithJobAffinityExecutor#shutdownNow()}
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    /**
+     * @return number of jobs accepted and not yet taken by the lane thread
+     */
+    public int queueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return nanoseconds between submission and start of each job, or null when metrics are disabled
+     */
+    public LatencyHistogram queueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return nanoseconds spent running each job, or null when metrics are disabled
+     */
+    public LatencyHistogram runTime() {
+        return runTime;
+    }
+
+    @Override
+    public String toString() {
+        return "LaneMetrics{lane=" + lane + ", submitted=" + submitted + ", completed=" + completed
+                + ", rejected=" + rejected + ", dropped=" + dropped + ", queueDepth=" + queueDepth + '}';
+    }
+}
@@ -0,0 +1,272 @@
+package com.coderevisited;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Changes the number of lanes of a pool while it runs, see {@link ThreadPoolWithJobAffinityExecutor#resize(int)}.
+ * <p>
+ * Job ids are routed with the current {@link Routing}. A resize goes through four steps:
+ * <ol>
+ * <li>the new routing is published, together with a {@link Transition} from the old size;</li>
+ * <li>the resize waits for submitters still routing with the old size, which count themselves in and out of
+ * their lane, so that no job routed with the old size is queued from then on;</li>
+ * <li>a fence job is queued on every old lane. Until the fence of its old lane has run, a job whose lane has
+ * changed is held on the transition instead of being queued on its new lane;</li>
+ * <li>once a fence has run, the jobs held for its lane are queued on their new lanes, in order, and jobs of the
+ * old lane go straight to their new lane from then on.</li>
+ * </ol>
+ * Jobs of a job id therefore never run on its new lane before all its jobs on the old lane have completed. Lanes
+ * beyond the new size are shut down once their fence has run, as no job is routed to them any more.
+ */
+final class LaneResizer {
+
+    /**
+     * Admission counters are this many ints apart, so that counters of different lanes sit on different cache lines.
+     */
+    private static final int STRIDE = 16;
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final AtomicIntegerArray admissions;
+    private final Object resizeLock = new Object();
+    private volatile Routing routing;
+
+    /**
+     * @param pool         pool whose lanes are resized
+     * @param poolSize     initial number of lanes
+     * @param maxPoolSize  largest number of lanes
+     */
+    LaneResizer(ThreadPoolWithJobAffinityExecutor pool, int poolSize, int maxPoolSize) {
+        this.pool = pool;
+        this.admissions = new AtomicIntegerArray(maxPoolSize * STRIDE);
+        this.routing = new Routing(poolSize, null);
+    }
+
+    /**
+     * @return current number of lanes
+     */
+    int size() {
+        return routing.size;
+    }
+
+    /**
+     * @param jobId a string containing job id.
+     * @return lane of the job id with the current number of lanes
+     */
+    int laneOf(String jobId) {
+        return pool.getPool(jobId, routing.size);
+    }
+
+    /**
+     * Queues a job on the lane of its job id, or holds it while its job id moves to another lane.
+     *
+     * @param jobId        a string containing job id, null for a numeric job id
+     * @param numericJobId the numeric job id, when jobId is null
+     * @param job          a Runnable representing the job to be executed.
+     */
+    void submit(String jobId, long numericJobId, Runnable job) {
+        route(jobId, numericJobId, job, false);
+    }
+
+    /**
+     * Routes a job like {@link #submit(String, long, Runnable)}, but never waits for room in a full lane.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return false if the lane of the job id is full
+     */
+    boolean offer(String jobId, Runnable job) {
+        return route(jobId, 0L, job, true);
+    }
+
+    private boolean route(String jobId, long numericJobId, Runnable job, boolean offer) {
+        for (; ; ) {
+            Routing routing = this.routing;
+            int lane = lane(jobId, numericJobId, routing.size);
+            admissions.getAndIncrement(lane * STRIDE);
+            try {
+                //a resize publishes its routing before waiting for admissions, so one of them sees the other
+                if (routing != this.routing)
+                    continue;
+                Transition transition = routing.transition;
+                if (transition != null && transition.hold(lane(jobId, numericJobId, transition.oldSize), lane,
+                        jobId, numericJobId, job))
+                    return true;
+                if (offer)
+                    return pool.offerOnLane(lane, jobId, job);
+                if (jobId == null)
+                    pool.submitToLane(lane, numericJobId, job);
+                else
+                    pool.submitToLane(lane, jobId, job);
+                return true;
+            } finally {
+                admissions.getAndDecrement(lane * STRIDE);
+            }
+        }
+    }
+
+    /**
+     * Changes the number of lanes, returning once every moved job id runs on its new lane. Resizes are serialized.
+     *
+     * @param newSize new number of lanes
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    void resize(int newSize) {
+        synchronized (resizeLock) {
+            if (pool.isShutdown())
+                throw new RejectedExecutionException("Thread pool is terminated");
+            int oldSize = routing.size;
+            if (newSize == oldSize)
+                return;
+            Transition transition = new Transition(oldSize);
+            routing = new Routing(newSize, transition);
+            pool.updatePoolSize(newSize);
+            for (int i = 0; i < oldSize; i++) {
+                while (admissions.get(i * STRIDE) != 0) {
+                    Thread.yield();
+                }
+            }
+            //no job is routed with the old size any more, fence the lanes that have jobs
+            for (int i = 0; i < oldSize; i++) {
+                if (pool.isStarted(i))
+                    pool.putOnLane(i, transition.held[i]);
+                else
+                    transition.held[i].fenced.countDown();
+            }
+            for (int i = 0; i < oldSize; i++) {
+                transition.held[i].release();
+            }
+            routing = new Routing(newSize, null);
+            for (int i = newSize; i < oldSize; i++) {
+                pool.retireLane(i);
+            }
+        }
+    }
+
+    /**
+     * Waits for a resize in progress to complete.
+     */
+    void awaitResize() {
+        synchronized (resizeLock) {
+            //nothing to do, holding the lock is enough
+        }
+    }
+
+    private int lane(String jobId, long numericJobId, int size) {
+        return jobId == null ? pool.getPool(numericJobId, size) : pool.getPool(jobId, size);
+    }
+
+    /**
+     * Number of lanes job ids are routed to, and the resize in progress if any.
+     */
+    private static final class Routing {
+
+        final int size;
+        final Transition transition;
+
+        Routing(int size, Transition transition) {
+            this.size = size;
+            this.transition = transition;
+        }
+    }
+
+    /**
+     * A resize in progress, holding the jobs of moved job ids per old lane.
+     */
+    private final class Transition {
+
+        final int oldSize;
+        final Held[] held;
+
+        Transition(int oldSize) {
+            this.oldSize = oldSize;
+            this.held = new Held[oldSize];
+            for (int i = 0; i < oldSize; i++) {
+                held[i] = new Held();
+            }
+        }
+
+        /**
+         * @return true if the job has been held, false if it must be queued on its new lane
+         */
+        boolean hold(int oldLane, int newLane, String jobId, long numericJobId, Runnable job) {
+            if (oldLane == newLane)
+                return false;
+            Held held = this.held[oldLane];
+            synchronized (held) {
+                if (held.released)
+                    return false;
+                held.jobs.add(new HeldJob(newLane, jobId, numericJobId, job));
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Jobs moving off one old lane, and the fence of that lane. Guarded by its own monitor. Runs as the fence job.
+     */
+    private final class Held implements Runnable {
+
+        final CountDownLatch fenced = new CountDownLatch(1);
+        final Queue<HeldJob> jobs = new ArrayDeque<>();
+        boolean released;
+
+        @Override
+        public void run() {
+            fenced.countDown();
+        }
+
+        /**
+         * Called by the resizing thread. Waits for the fence, then queues the held jobs on their new lanes in order.
+         */
+        void release() {
+            boolean interrupted = false;
+            for (; ; ) {
+                try {
+                    if (fenced.await(10000, TimeUnit.MILLISECONDS))
+                        break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            for (; ; ) {
+                HeldJob held;
+                synchronized (this) {
+                    held = jobs.poll();
+                    if (held == null) {
+                        released = true;
+                        break;
+                    }
+                }
+                pool.putOnLane(held.lane, held.jobId, held.numericJobId, held.job);
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class HeldJob {
+
+        final int lane;
+        final String jobId;
+        final long numericJobId;
+        final Runnable job;
+
+        HeldJob(int lane, String jobId, long numericJobId, Runnable job) {
+            this.lane = lane;
+            this.jobId = jobId;
+            this.numericJobId = numericJobId;
+            this.job = job;
+        }
+    }
+}
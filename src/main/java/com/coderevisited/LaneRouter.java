@@ -0,0 +1,36 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Decides which lane runs the jobs of a job id. Built-in strategies are available from {@link LaneRouters}.
+ * <p>
+ * A router must be a pure function of its arguments: the same job id must always be routed to the same lane for a
+ * given number of lanes, otherwise jobs of that job id may run concurrently and out of order.
+ * <p>
+ * A numeric job id must be routed like its decimal string. The built-in routers do so without building the string.
+ */
+public interface LaneRouter {
+
+    /**
+     * @param jobId job id, never null
+     * @param lanes number of lanes of the pool, at least 1
+     * @return lane index in [0, lanes)
+     */
+    int lane(String jobId, int lanes);
+
+    /**
+     * Routes a numeric job id. Defaults to routing its decimal string.
+     *
+     * @param jobId numeric job id
+     * @param lanes number of lanes of the pool, at least 1
+     * @return lane index in [0, lanes), the lane of {@code Long.toString(jobId)}
+     */
+    default int lane(long jobId, int lanes) {
+        return lane(Long.toString(jobId), lanes);
+    }
+}
@@ -0,0 +1,243 @@
+package com.coderevisited;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Built-in {@link LaneRouter} strategies.
+ */
+public final class LaneRouters {
+
+    private static final LaneRouter MODULO = new LaneRouter() {
+        @Override
+        public int lane(String jobId, int lanes) {
+            return Math.abs(jobId.hashCode() % lanes);
+        }
+
+        @Override
+        public int lane(long jobId, int lanes) {
+            return Math.abs(decimalHashCode(jobId) % lanes);
+        }
+
+        @Override
+        public String toString() {
+            return "modulo";
+        }
+    };
+
+    private static final LaneRouter MIXED_HASH = new LaneRouter() {
+        @Override
+        public int lane(String jobId, int lanes) {
+            return reduce(mix32(jobId.hashCode()), lanes);
+        }
+
+        @Override
+        public int lane(long jobId, int lanes) {
+            return reduce(mix32(decimalHashCode(jobId)), lanes);
+        }
+
+        @Override
+        public String toString() {
+            return "mixedHash";
+        }
+    };
+
+    private static final LaneRouter JUMP_CONSISTENT_HASH = new LaneRouter() {
+        @Override
+        public int lane(String jobId, int lanes) {
+            return jumpConsistentHash(mix64(jobId.hashCode()), lanes);
+        }
+
+        @Override
+        public int lane(long jobId, int lanes) {
+            return jumpConsistentHash(mix64(decimalHashCode(jobId)), lanes);
+        }
+
+        @Override
+        public String toString() {
+            return "jumpConsistentHash";
+        }
+    };
+
+    /**
+     * Hashcode of the decimal string of {@link Long#MIN_VALUE}, whose absolute value has no long representation.
+     */
+    private static final int MIN_VALUE_HASH_CODE = Long.toString(Long.MIN_VALUE).hashCode();
+
+    private LaneRouters() {
+    }
+
+    /**
+     * The original routing, absolute value of (hashcode of JobId) % lanes. Cheap to reason about, but sequential
+     * job ids such as "ORDER-1001", "ORDER-1002" differ only in their low hash bits and may cluster on few lanes.
+     *
+     * @return the default router of the pool
+     */
+    public static LaneRouter modulo() {
+        return MODULO;
+    }
+
+    /**
+     * Runs the hashcode of the job id through the MurmurHash3 finalizer, so every input bit affects every output
+     * bit, then maps it to a lane with a mask when the number of lanes is a power of two, or with a multiply and
+     * shift otherwise. No division is involved.
+     *
+     * @return a router spreading similar job ids evenly
+     */
+    public static LaneRouter mixedHash() {
+        return MIXED_HASH;
+    }
+
+    /**
+     * Jump consistent hashing (Lamping and Veach). When the number of lanes grows from n to n + 1, only about
+     * 1 / (n + 1) of the job ids move, and all of them to the new lane.
+     *
+     * @return a router keeping job ids on their lane as the number of lanes changes
+     */
+    public static LaneRouter jumpConsistentHash() {
+        return JUMP_CONSISTENT_HASH;
+    }
+
+    /**
+     * Pins known job ids, typically the heaviest ones, to explicit lanes, and routes every other job id with the
+     * fallback router. A pinned lane that does not exist in the pool is ignored in favour of the fallback.
+     * Numeric job ids are looked up in a sorted array of the pinned job ids that are decimal numbers, without
+     * building their string.
+     *
+     * @param overrides job id to lane index, copied
+     * @param fallback  router for job ids that are not pinned
+     * @return a router honouring the overrides
+     */
+    public static LaneRouter withOverrides(Map<String, Integer> overrides, LaneRouter fallback) {
+        if (overrides == null || fallback == null)
+            throw new NullPointerException();
+        final Map<String, Integer> table = Collections.unmodifiableMap(new HashMap<>(overrides));
+        for (Map.Entry<String, Integer> entry : table.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null)
+                throw new NullPointerException();
+            if (entry.getValue() < 0)
+                throw new IllegalArgumentException("Negative lane for job id " + entry.getKey());
+        }
+        final LaneRouter delegate = fallback;
+        final Map<Long, Integer> numeric = new TreeMap<>();
+        for (Map.Entry<String, Integer> entry : table.entrySet()) {
+            Long jobId = parseCanonicalLong(entry.getKey());
+            if (jobId != null)
+                numeric.put(jobId, entry.getValue());
+        }
+        final long[] numericIds = new long[numeric.size()];
+        final int[] numericLanes = new int[numeric.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : numeric.entrySet()) {
+            numericIds[i] = entry.getKey();
+            numericLanes[i++] = entry.getValue();
+        }
+        return new LaneRouter() {
+            @Override
+            public int lane(String jobId, int lanes) {
+                Integer lane = table.get(jobId);
+                if (lane != null && lane < lanes)
+                    return lane;
+                return delegate.lane(jobId, lanes);
+            }
+
+            @Override
+            public int lane(long jobId, int lanes) {
+                int index = Arrays.binarySearch(numericIds, jobId);
+                if (index >= 0 && numericLanes[index] < lanes)
+                    return numericLanes[index];
+                return delegate.lane(jobId, lanes);
+            }
+
+            @Override
+            public String toString() {
+                return "withOverrides(" + table + ", " + delegate + ")";
+            }
+        };
+    }
+
+    /**
+     * Computes {@code Long.toString(value).hashCode()} without building the string.
+     */
+    static int decimalHashCode(long value) {
+        if (value == Long.MIN_VALUE)
+            return MIN_VALUE_HASH_CODE;
+        long remaining = Math.abs(value);
+        int hash = 0;
+        int power = 1;
+        //String.hashCode is the sum of char * 31^(distance to the last char), so digits can be taken last first
+        do {
+            hash += ('0' + (int) (remaining % 10)) * power;
+            power *= 31;
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0)
+            hash += '-' * power;
+        return hash;
+    }
+
+    /**
+     * @return the number whose decimal string is the given job id, or null if there is none
+     */
+    private static Long parseCanonicalLong(String jobId) {
+        try {
+            long value = Long.parseLong(jobId);
+            return Long.toString(value).equals(jobId) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * MurmurHash3 32 bit finalizer.
+     */
+    static int mix32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * MurmurHash3 64 bit finalizer.
+     */
+    static long mix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Maps a well mixed hash to [0, lanes) without division.
+     */
+    static int reduce(int hash, int lanes) {
+        if ((lanes & (lanes - 1)) == 0)
+            return hash & (lanes - 1);
+        return (int) (((hash & 0xffffffffL) * lanes) >>> 32);
+    }
+
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
@@ -0,0 +1,105 @@
+package com.coderevisited;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Counters and histograms of one lane. Owned by the pool rather than by the lane, so they outlive the lane thread.
+ * <p>
+ * Everything but the rejection and drop counts is written by the thread consuming the lane only, the lane thread
+ * or a submitter running jobs under {@link OverflowPolicy#CALLER_RUNS}. The completed count is published with an
+ * ordered store after each job, which also makes the histogram updates of that job visible to readers.
+ */
+final class LaneStats {
+
+    private static final AtomicLongFieldUpdater<LaneStats> COMPLETED =
+            AtomicLongFieldUpdater.newUpdater(LaneStats.class, "completed");
+
+    private final LatencyHistogram queueWait;
+    private final LatencyHistogram runTime;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long completed;
+
+    /**
+     * @param timed whether queue wait and run time are recorded
+     */
+    LaneStats(boolean timed) {
+        this.queueWait = timed ? new LatencyHistogram() : null;
+        this.runTime = timed ? new LatencyHistogram() : null;
+    }
+
+    boolean isTimed() {
+        return queueWait != null;
+    }
+
+    /**
+     * Called by the consumer of the lane once a job has finished, whether it completed normally or not.
+     *
+     * @param waited nanoseconds between submission and start of the job
+     * @param ran    nanoseconds spent running the job
+     */
+    void recordTimedJob(long waited, long ran) {
+        queueWait.record(waited);
+        runTime.record(ran);
+        COMPLETED.lazySet(this, completed + 1);
+    }
+
+    /**
+     * Called by the consumer of the lane once a job has finished when timing is disabled.
+     */
+    void recordJob() {
+        COMPLETED.lazySet(this, completed + 1);
+    }
+
+    void recordRejection() {
+        rejected.incrementAndGet();
+    }
+
+    void recordRejections(int count) {
+        rejected.addAndGet(count);
+    }
+
+    void recordDrop() {
+        dropped.incrementAndGet();
+    }
+
+    long completed() {
+        return completed;
+    }
+
+    long rejected() {
+        return rejected.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return copy of the queue wait histogram, or null when timing is disabled
+     */
+    LatencyHistogram queueWait() {
+        if (queueWait == null)
+            return null;
+        //reading completed first makes the histogram writes of completed jobs visible
+        completed();
+        return queueWait.copy();
+    }
+
+    /**
+     * @return copy of the run time histogram, or null when timing is disabled
+     */
+    LatencyHistogram runTime() {
+        if (runTime == null)
+            return null;
+        completed();
+        return runTime.copy();
+    }
+}
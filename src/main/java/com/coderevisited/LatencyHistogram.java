@@ -0,0 +1,130 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Histogram of durations in nanoseconds with a fixed relative precision, in the style of HdrHistogram.
+ * <p>
+ * Values below 32 have their own bucket. Above that, every power of two range is split into 32 equal buckets,
+ * so a recorded value is known within about 3%. Values beyond {@link #HIGHEST_TRACKABLE_VALUE} (about 18 minutes)
+ * are counted in the last bucket.
+ * <p>
+ * Recording is allocation free and meant for a single writer thread. Other threads read through {@link #copy()},
+ * which may see a recording in progress, each count being at worst one behind.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HIGHEST_MAGNITUDE = 39;
+
+    /**
+     * Largest value recorded in its own bucket.
+     */
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << (HIGHEST_MAGNITUDE + 1)) - 1;
+
+    private static final int BUCKET_COUNT = (HIGHEST_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final long[] counts;
+    private long totalCount;
+    private long max;
+    private long sum;
+
+    LatencyHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+    }
+
+    private LatencyHistogram(LatencyHistogram source) {
+        this.counts = source.counts.clone();
+        this.totalCount = source.totalCount;
+        this.max = source.max;
+        this.sum = source.sum;
+    }
+
+    /**
+     * Called by the writer thread only.
+     *
+     * @param value duration in nanoseconds, negative values are recorded as zero
+     */
+    void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts[index(Math.min(value, HIGHEST_TRACKABLE_VALUE))]++;
+        totalCount++;
+        sum += value;
+        if (value > max)
+            max = value;
+    }
+
+    /**
+     * @return an independent copy of this histogram
+     */
+    public LatencyHistogram copy() {
+        return new LatencyHistogram(this);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long count() {
+        return totalCount;
+    }
+
+    /**
+     * @return largest recorded value, exact
+     */
+    public long max() {
+        return max;
+    }
+
+    /**
+     * @return arithmetic mean of the recorded values, exact
+     */
+    public double mean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile percentile in [0, 100]
+     * @return highest value of the bucket holding the given percentile, never above {@link #max()}
+     */
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket - SUB_BUCKET_COUNT;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,339 @@
+package com.coderevisited;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Bounded multi-producer / single-consumer ring buffer.
+ * <p>
+ * Producers claim a slot with a compare-and-set on the producer sequence and then publish the element with an
+ * ordered store. The single consumer reads published elements in sequence order, so elements offered by one
+ * producer are polled in the order they were offered. The producer sequence, the cached consumer limit and the
+ * consumer sequence each live on their own cache line.
+ * <p>
+ * Optionally every element carries a timestamp, written by the producer before the element is published and handed
+ * to the consumer along with it. Likewise every element may carry a key, made of an object and a long, so that a
+ * consumer can tell what an element stands for without the producer wrapping it. Keys are not cleared once drained,
+ * they stay referenced until their slot is reused.
+ * <p>
+ * The buffer can be closed. Once closed, no further element can be claimed, but everything claimed before the
+ * close is still handed to the consumer.
+ *
+ * @param <E> type of elements
+ */
+final class MpscRingBuffer<E> extends MpscRingBufferConsumerSequence {
+
+    static final int OFFERED = 0;
+    static final int FULL = 1;
+    static final int CLOSED = 2;
+
+    private final AtomicReferenceArray<E> buffer;
+    private final long[] timestamps;
+    private final Object[] keys;
+    private final long[] numericKeys;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * @param requestedCapacity minimum number of elements the buffer can hold, rounded up to a power of two
+     */
+    MpscRingBuffer(int requestedCapacity) {
+        this(requestedCapacity, false);
+    }
+
+    /**
+     * @param requestedCapacity minimum number of elements the buffer can hold, rounded up to a power of two
+     * @param timestamped       whether elements carry a timestamp
+     */
+    MpscRingBuffer(int requestedCapacity, boolean timestamped) {
+        this(requestedCapacity, timestamped, false);
+    }
+
+    /**
+     * @param requestedCapacity minimum number of elements the buffer can hold, rounded up to a power of two
+     * @param timestamped       whether elements carry a timestamp
+     * @param keyed             whether elements carry a key
+     */
+    MpscRingBuffer(int requestedCapacity, boolean timestamped, boolean keyed) {
+        if (requestedCapacity <= 0 || requestedCapacity > 1 << 30)
+            throw new IllegalArgumentException();
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.timestamps = timestamped ? new long[capacity] : null;
+        this.keys = keyed ? new Object[capacity] : null;
+        this.numericKeys = keyed ? new long[capacity] : null;
+        this.producerLimit = capacity;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Called by any producer.
+     *
+     * @param e element to append
+     * @return {@link #OFFERED}, {@link #FULL} or {@link #CLOSED}
+     */
+    int offer(E e) {
+        return offer(e, 0L);
+    }
+
+    /**
+     * Called by any producer.
+     *
+     * @param e         element to append
+     * @param timestamp timestamp handed to the consumer with the element, ignored if the buffer is not timestamped
+     * @return {@link #OFFERED}, {@link #FULL} or {@link #CLOSED}
+     */
+    int offer(E e, long timestamp) {
+        return offer(e, null, 0L, timestamp);
+    }
+
+    /**
+     * Called by any producer.
+     *
+     * @param e          element to append
+     * @param key        key handed to the consumer with the element, ignored if the buffer is not keyed
+     * @param numericKey numeric part of the key, ignored if the buffer is not keyed
+     * @param timestamp  timestamp handed to the consumer with the element, ignored if the buffer is not timestamped
+     * @return {@link #OFFERED}, {@link #FULL} or {@link #CLOSED}
+     */
+    int offer(E e, Object key, long numericKey, long timestamp) {
+        long limit = producerLimit;
+        long sequence;
+        do {
+            sequence = producerSequence;
+            if (sequence < 0)
+                return CLOSED;
+            if (sequence >= limit) {
+                limit = consumerSequence + capacity;
+                if (sequence >= limit)
+                    return FULL;
+                producerLimit = limit;
+            }
+        } while (!casProducerSequence(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        if (timestamps != null)
+            timestamps[index] = timestamp;
+        if (keys != null) {
+            keys[index] = key;
+            numericKeys[index] = numericKey;
+        }
+        //the ordered store of the element publishes the timestamp and the key with it
+        buffer.lazySet(index, e);
+        return OFFERED;
+    }
+
+    /**
+     * Called by the consumer only. Moves up to {@code batch.length} elements into the given array and releases
+     * their slots with a single store of the consumer sequence.
+     *
+     * @param batch array receiving the elements, starting at index 0
+     * @return number of elements moved
+     */
+    int drainTo(E[] batch) {
+        return drainTo(batch, null);
+    }
+
+    /**
+     * Called by the consumer only. Moves up to {@code batch.length} elements into the given array and releases
+     * their slots with a single store of the consumer sequence.
+     *
+     * @param batch      array receiving the elements, starting at index 0
+     * @param timestamps array receiving the timestamps of the elements, or null if not wanted
+     * @return number of elements moved
+     */
+    int drainTo(E[] batch, long[] timestamps) {
+        return drainTo(batch, timestamps, null, null);
+    }
+
+    /**
+     * Called by the consumer only. Moves up to {@code batch.length} elements into the given array and releases
+     * their slots with a single store of the consumer sequence.
+     *
+     * @param batch       array receiving the elements, starting at index 0
+     * @param timestamps  array receiving the timestamps of the elements, or null if not wanted
+     * @param keys        array receiving the keys of the elements, or null if not wanted
+     * @param numericKeys array receiving the numeric parts of the keys, or null if keys are not wanted
+     * @return number of elements moved
+     */
+    int drainTo(E[] batch, long[] timestamps, Object[] keys, long[] numericKeys) {
+        long consumed = consumerSequence;
+        long available = (producerSequence & Long.MAX_VALUE) - consumed;
+        int n = (int) Math.min(available, batch.length);
+        for (int i = 0; i < n; i++) {
+            int index = (int) (consumed + i) & mask;
+            E e;
+            //the slot has been claimed, its element is about to be published
+            while ((e = buffer.get(index)) == null)
+                Thread.yield();
+            if (timestamps != null)
+                timestamps[i] = this.timestamps[index];
+            if (keys != null) {
+                keys[i] = this.keys[index];
+                numericKeys[i] = this.numericKeys[index];
+            }
+            buffer.lazySet(index, null);
+            batch[i] = e;
+        }
+        if (n > 0)
+            lazySetConsumerSequence(consumed + n);
+        return n;
+    }
+
+    /**
+     * Called by any producer. Claims room for as many of the given elements as fit with a single compare-and-set,
+     * then publishes them in order.
+     *
+     * @param elements  array holding the elements to append
+     * @param from      index of the first element to append
+     * @param count     number of elements to append
+     * @param timestamp timestamp handed to the consumer with every element, ignored if the buffer is not timestamped
+     * @return number of elements appended, 0 if the buffer is full, -1 if it is closed
+     */
+    int offer(E[] elements, int from, int count, long timestamp) {
+        return offer(elements, null, null, from, count, timestamp);
+    }
+
+    /**
+     * Called by any producer. Claims room for as many of the given elements as fit with a single compare-and-set,
+     * then publishes them in order along with their keys.
+     *
+     * @param elements    array holding the elements to append
+     * @param keys        array holding the keys of the elements, at the same indexes, ignored if the buffer is not
+     *                    keyed
+     * @param numericKeys array holding the numeric parts of the keys, ignored if the buffer is not keyed
+     * @param from        index of the first element to append
+     * @param count       number of elements to append
+     * @param timestamp   timestamp handed to the consumer with every element, ignored if the buffer is not
+     *                    timestamped
+     * @return number of elements appended, 0 if the buffer is full, -1 if it is closed
+     */
+    int offer(E[] elements, Object[] keys, long[] numericKeys, int from, int count, long timestamp) {
+        long limit = producerLimit;
+        long sequence;
+        int n;
+        do {
+            sequence = producerSequence;
+            if (sequence < 0)
+                return -1;
+            if (sequence + count > limit) {
+                limit = consumerSequence + capacity;
+                if (sequence >= limit)
+                    return 0;
+                producerLimit = limit;
+            }
+            n = (int) Math.min(count, limit - sequence);
+        } while (!casProducerSequence(sequence, sequence + n));
+        for (int i = 0; i < n; i++) {
+            int index = (int) (sequence + i) & mask;
+            if (timestamps != null)
+                timestamps[index] = timestamp;
+            if (this.keys != null) {
+                this.keys[index] = keys[from + i];
+                this.numericKeys[index] = numericKeys[from + i];
+            }
+            buffer.lazySet(index, elements[from + i]);
+        }
+        return n;
+    }
+
+    /**
+     * @return number of elements claimed since the buffer was created
+     */
+    long claimed() {
+        return producerSequence & Long.MAX_VALUE;
+    }
+
+    /**
+     * @return number of elements claimed and not yet drained
+     */
+    int size() {
+        //read the consumer first, so the difference can not go negative
+        long consumed = consumerSequence;
+        return (int) ((producerSequence & Long.MAX_VALUE) - consumed);
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Prevents any further offer from succeeding. Idempotent.
+     */
+    void close() {
+        for (; ; ) {
+            long sequence = producerSequence;
+            if (sequence < 0 || casProducerSequence(sequence, sequence | Long.MIN_VALUE))
+                return;
+        }
+    }
+
+    boolean isClosed() {
+        return producerSequence < 0;
+    }
+}
+
+abstract class MpscRingBufferHeadPad {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+}
+
+abstract class MpscRingBufferProducerSequence extends MpscRingBufferHeadPad {
+
+    private static final AtomicLongFieldUpdater<MpscRingBufferProducerSequence> PRODUCER_SEQUENCE =
+            AtomicLongFieldUpdater.newUpdater(MpscRingBufferProducerSequence.class, "producerSequence");
+
+    /**
+     * Next sequence to claim. The sign bit is set once the buffer is closed.
+     */
+    volatile long producerSequence;
+
+    final boolean casProducerSequence(long expect, long update) {
+        return PRODUCER_SEQUENCE.compareAndSet(this, expect, update);
+    }
+}
+
+abstract class MpscRingBufferProducerPad extends MpscRingBufferProducerSequence {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36;
+}
+
+abstract class MpscRingBufferProducerLimit extends MpscRingBufferProducerPad {
+
+    /**
+     * Producers may claim sequences below this limit without reading the consumer sequence.
+     */
+    volatile long producerLimit;
+}
+
+abstract class MpscRingBufferLimitPad extends MpscRingBufferProducerLimit {
+    long p40, p41, p42, p43, p44, p45, p46, p47;
+    long p50, p51, p52, p53, p54, p55, p56;
+}
+
+abstract class MpscRingBufferConsumerSequence extends MpscRingBufferLimitPad {
+
+    private static final AtomicLongFieldUpdater<MpscRingBufferConsumerSequence> CONSUMER_SEQUENCE =
+            AtomicLongFieldUpdater.newUpdater(MpscRingBufferConsumerSequence.class, "consumerSequence");
+
+    /**
+     * Next sequence the consumer will read. Written by the consumer only.
+     */
+    volatile long consumerSequence;
+
+    long p60, p61, p62, p63, p64, p65, p66, p67;
+    long p70, p71, p72, p73, p74, p75, p76;
+
+    final void lazySetConsumerSequence(long value) {
+        CONSUMER_SEQUENCE.lazySet(this, value);
+    }
+}
@@ -0,0 +1,148 @@
+package com.coderevisited;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * A job ordered with the jobs of several job ids, see
+ * {@link ThreadPoolWithJobAffinityExecutor#submitMultiKey(java.util.Collection, Runnable)}.
+ * <p>
+ * The job is queued as one {@link Part} on every lane owning some of its job ids. A lane reaching a part has run all
+ * the jobs of those job ids queued before it, and from then on holds back their later jobs, see {@link KeyGate},
+ * while it goes on with the jobs of other job ids. The lane reaching the last part runs the job, then releases the
+ * job ids held by every part. No lane waits for another.
+ */
+final class MultiKeyJob {
+
+    private final String jobId;
+    private final Runnable job;
+    private final int partCount;
+    /**
+     * Parts not yet reached by their lane.
+     */
+    private final AtomicInteger pending;
+    /**
+     * Parts queued so far. Complete before the last part is reached, which publishes them to the lane running the
+     * job.
+     */
+    private final List<Part> parts = new ArrayList<>();
+    private volatile boolean cancelled;
+    /**
+     * Set once the job has been handed back by a shutdown now, used by the thread shutting down only.
+     */
+    private boolean abandoned;
+
+    /**
+     * @param jobId     job id the job is handed back under if it never runs
+     * @param job       a Runnable representing the job to be executed.
+     * @param partCount number of lanes owning job ids of the job
+     */
+    MultiKeyJob(String jobId, Runnable job, int partCount) {
+        this.jobId = jobId;
+        this.job = job;
+        this.partCount = partCount;
+        this.pending = new AtomicInteger(partCount);
+    }
+
+    /**
+     * Creates the part of a lane, to be queued on it next.
+     *
+     * @param jobIds job ids of the job owned by the lane
+     * @param gate   gate of the lane
+     * @return the part
+     */
+    Part addPart(List<String> jobIds, KeyGate gate) {
+        Part part = new Part(jobIds.toArray(new String[0]), gate);
+        parts.add(part);
+        return part;
+    }
+
+    /**
+     * Gives up the job after queueing some of its parts only, for instance because a lane has been shut down. The
+     * queued parts release their job ids once all of them have been reached.
+     *
+     * @param queued number of parts queued
+     */
+    void cancel(int queued) {
+        parts.subList(queued, parts.size()).clear();
+        cancelled = true;
+        if (pending.addAndGet(queued - partCount) == 0)
+            complete(null);
+    }
+
+    /**
+     * Called by the consumer of a lane reaching a part.
+     *
+     * @param gate gate of the lane
+     * @return the job followed by the release of the parts if this was the last part, to be run by the caller,
+     * otherwise null
+     */
+    Runnable arrive(final KeyGate gate) {
+        if (pending.decrementAndGet() != 0)
+            return null;
+        return () -> {
+            try {
+                if (!cancelled)
+                    job.run();
+            } finally {
+                complete(gate);
+            }
+        };
+    }
+
+    /**
+     * Releases every part, directly on the lane of the given gate and through their inbox on the other lanes.
+     *
+     * @param gate gate of the lane of the calling consumer, null if called by another thread
+     */
+    private void complete(KeyGate gate) {
+        for (Part part : parts) {
+            if (part.gate == gate)
+                gate.releaseLocally(part);
+            else
+                part.gate.release(part);
+        }
+    }
+
+    /**
+     * Hands the job back once, under its first job id, after a shutdown now gave up one of its parts.
+     */
+    void abandon(Map<String, List<Runnable>> unrun) {
+        if (abandoned)
+            return;
+        abandoned = true;
+        unrun.computeIfAbsent(jobId, id -> new ArrayList<>()).add(job);
+    }
+
+    /**
+     * The share of a multi-key job queued on one lane. Taken apart by the consumer of the lane, see
+     * {@link KeyGate#admit(Runnable, Object, long)}, rather than run.
+     */
+    final class Part implements Runnable {
+
+        final String[] jobIds;
+        final KeyGate gate;
+
+        private Part(String[] jobIds, KeyGate gate) {
+            this.jobIds = jobIds;
+            this.gate = gate;
+        }
+
+        MultiKeyJob owner() {
+            return MultiKeyJob.this;
+        }
+
+        @Override
+        public void run() {
+            //never queued as a plain job, lanes hand parts to their gate
+        }
+    }
+}
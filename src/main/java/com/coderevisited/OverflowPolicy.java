@@ -0,0 +1,43 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * What a submitter does when the lane of its job id is full, see
+ * {@link ThreadPoolWithJobAffinityExecutor.Builder#overflowPolicy(OverflowPolicy)}.
+ * <p>
+ * Whatever the policy, a submitter waits for room no longer than the block timeout of the pool, and the job is
+ * rejected with a {@link java.util.concurrent.RejectedExecutionException} once it has expired.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Waits until the lane thread has made room. The default.
+     */
+    BLOCK,
+
+    /**
+     * Rejects the job at once with a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    REJECT,
+
+    /**
+     * Makes the submitter run the oldest jobs queued on the lane in place of the lane thread, then queues the job.
+     * Jobs of a job id still run one at a time and in submission order, because the submitter only takes over
+     * while the lane thread is between two batches, but they no longer always run on the same thread. A submitter
+     * that can not take over waits as with {@link #BLOCK}. Jobs that throw are reported to the uncaught exception
+     * handler of the lane thread.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Discards the oldest job queued on the lane, whatever its job id, to make room for the job. Discarded jobs are
+     * counted in {@link LaneMetrics#dropped()}, and cancelled if they are futures. Not available together with
+     * rebalancing or resizing, whose own jobs must not be discarded.
+     */
+    DROP_OLDEST
+}
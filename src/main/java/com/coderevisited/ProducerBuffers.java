@@ -0,0 +1,201 @@
+package com.coderevisited;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Producer-side buffers of a pool, see {@link ThreadPoolWithJobAffinityExecutor.Builder#producerBuffering}.
+ * <p>
+ * Each submitting thread has its own buffer, a {@link JobBatch} guarded by the buffer's monitor. The owner is the
+ * only thread taking the monitor while the buffer fills, so adding a job stays within the cache lines of the
+ * submitting core. A full buffer is published by its owner through the grouped batch path of the pool, with a
+ * single claim on each lane it holds jobs for. A buffer that has held a job for the longest delay is published by
+ * the timer thread, which takes the monitor once per delay at most. The timer thread never waits for room: the
+ * jobs of a full lane stay in the buffer, ahead of the jobs added later, and are tried again at the next tick.
+ * <p>
+ * Buffers are only weakly registered, so the buffer of a thread that has died is collected once it is empty. One
+ * still holding jobs is reachable from its pending flush, which publishes them.
+ */
+final class ProducerBuffers {
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final TimingWheel timers;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final ThreadLocal<Buffer> local = ThreadLocal.withInitial(this::register);
+    private final Set<Reference<Buffer>> registered = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<Buffer> collected = new ReferenceQueue<>();
+
+    /**
+     * @param pool          pool the buffers are published to
+     * @param timers        timing wheel publishing buffers that have waited for the longest delay
+     * @param batchSize     number of jobs publishing a buffer
+     * @param maxDelayNanos longest time a job waits in a buffer, in nanoseconds
+     */
+    ProducerBuffers(ThreadPoolWithJobAffinityExecutor pool, TimingWheel timers, int batchSize, long maxDelayNanos) {
+        this.pool = pool;
+        this.timers = timers;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    private Buffer register() {
+        for (Reference<? extends Buffer> reference; (reference = collected.poll()) != null; ) {
+            registered.remove(reference);
+        }
+        Buffer buffer = new Buffer();
+        registered.add(new WeakReference<>(buffer, collected));
+        return buffer;
+    }
+
+    /**
+     * Adds a job to the buffer of the calling thread.
+     *
+     * @throws RejectedExecutionException if the buffer was published and a lane refused jobs
+     */
+    void add(String jobId, Runnable job) {
+        Buffer buffer = local.get();
+        synchronized (buffer) {
+            buffer.batch.add(jobId, job);
+            buffer.added();
+        }
+    }
+
+    /**
+     * Adds a job with a numeric job id to the buffer of the calling thread.
+     *
+     * @throws RejectedExecutionException if the buffer was published and a lane refused jobs
+     */
+    void add(long jobId, Runnable job) {
+        Buffer buffer = local.get();
+        synchronized (buffer) {
+            buffer.batch.add(jobId, job);
+            buffer.added();
+        }
+    }
+
+    /**
+     * Publishes the buffer of the calling thread.
+     *
+     * @throws RejectedExecutionException if a lane refused jobs
+     */
+    void flush() {
+        Buffer buffer = local.get();
+        synchronized (buffer) {
+            if (!buffer.batch.isEmpty())
+                buffer.publish();
+        }
+    }
+
+    /**
+     * Publishes the buffers of every thread, on shutdown. Jobs refused by their lane are dropped.
+     */
+    void flushAll() {
+        for (Reference<Buffer> reference : registered) {
+            Buffer buffer = reference.get();
+            if (buffer == null)
+                continue;
+            synchronized (buffer) {
+                if (buffer.batch.isEmpty())
+                    continue;
+                try {
+                    buffer.publish();
+                } catch (RejectedExecutionException e) {
+                    //counted by the lane that refused them
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the buffers of every thread without publishing them, on shutdown now.
+     *
+     * @param jobIds receives the job ids of the jobs, numeric ones as their decimal string
+     * @param jobs   receives the jobs, in the order each thread buffered them
+     */
+    void takeAll(List<String> jobIds, List<Runnable> jobs) {
+        for (Reference<Buffer> reference : registered) {
+            Buffer buffer = reference.get();
+            if (buffer == null)
+                continue;
+            synchronized (buffer) {
+                JobBatch batch = buffer.batch;
+                for (int i = 0; i < batch.size(); i++) {
+                    jobIds.add(batch.isNumeric(i) ? Long.toString(batch.numericJobId(i)) : batch.jobId(i));
+                    jobs.add(batch.job(i));
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Buffer of one thread. Runs as its own pending flush on the timer thread.
+     */
+    private final class Buffer implements Runnable {
+
+        //guarded by this
+        final JobBatch batch = new JobBatch(batchSize);
+        private long oldestNanos;
+        private boolean flushPending;
+
+        /**
+         * Publishes the buffer once full, or once the pool is shut down so that no job is left behind, and
+         * otherwise arms the pending flush for the first job.
+         */
+        void added() {
+            int size = batch.size();
+            if (size >= batchSize || pool.isShutdown()) {
+                publish();
+            } else if (size == 1) {
+                oldestNanos = System.nanoTime();
+                if (!flushPending) {
+                    flushPending = true;
+                    timers.runLater(this, maxDelayNanos);
+                }
+            }
+        }
+
+        void publish() {
+            try {
+                pool.submitGrouped(batch);
+            } finally {
+                batch.clear();
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            flushPending = false;
+            if (batch.isEmpty())
+                return;
+            //the buffer may have been published since, and refilled later
+            long wait = oldestNanos + maxDelayNanos - System.nanoTime();
+            if (wait > 0) {
+                flushPending = true;
+                timers.runLater(this, wait);
+                return;
+            }
+            try {
+                if (pool.offerGrouped(batch))
+                    return;
+            } catch (RuntimeException e) {
+                batch.clear();
+                throw e;
+            }
+            flushPending = true;
+            timers.runLater(this, 0L);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.coderevisited;
+
+import java.util.function.BiConsumer;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * What the pool does with a job whose job id has exceeded its rate limit, see
+ * {@link ThreadPoolWithJobAffinityExecutor.Builder#rateLimit(double, int, RateLimitPolicy)}.
+ */
+public final class RateLimitPolicy {
+
+    private static final RateLimitPolicy DELAY = new RateLimitPolicy(true, null, "delay");
+    private static final RateLimitPolicy REJECT = new RateLimitPolicy(false, null, "reject");
+
+    private final boolean delays;
+    private final BiConsumer<String, Runnable> handler;
+    private final String name;
+
+    private RateLimitPolicy(boolean delays, BiConsumer<String, Runnable> handler, String name) {
+        this.delays = delays;
+        this.handler = handler;
+        this.name = name;
+    }
+
+    /**
+     * Accepts the job and queues it on its lane once the job id has earned a token again. Jobs of the job id
+     * submitted meanwhile are delayed behind it, so the order of its jobs is kept. The submitter does not wait.
+     * Delayed jobs are queued by the timer thread of the pool, and still queued by {@link
+     * ThreadPoolWithJobAffinityExecutor#shutdown()}. As they have been accepted, the overflow policy does not apply
+     * to them: a delayed job finding its lane full is tried again at every tick of the timer, without holding up the
+     * other lanes, so it is never dropped, only handed back by {@link
+     * ThreadPoolWithJobAffinityExecutor#shutdownNow()}.
+     *
+     * @return the delaying policy
+     */
+    public static RateLimitPolicy delay() {
+        return DELAY;
+    }
+
+    /**
+     * Rejects the job with a {@link java.util.concurrent.RejectedExecutionException}.
+     *
+     * @return the rejecting policy
+     */
+    public static RateLimitPolicy reject() {
+        return REJECT;
+    }
+
+    /**
+     * Hands the job to the given handler, in the submitting thread, instead of queueing it.
+     *
+     * @param handler receives the job id and the job
+     * @return a policy handing jobs over
+     */
+    public static RateLimitPolicy handOff(BiConsumer<String, Runnable> handler) {
+        if (handler == null)
+            throw new NullPointerException();
+        return new RateLimitPolicy(false, handler, "handOff");
+    }
+
+    boolean delays() {
+        return delays;
+    }
+
+    BiConsumer<String, Runnable> handler() {
+        return handler;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
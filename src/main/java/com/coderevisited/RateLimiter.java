@@ -0,0 +1,176 @@
+package com.coderevisited;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Per job id token buckets in front of the lanes.
+ * <p>
+ * Buckets follow the generic cell rate algorithm: a bucket is a single long, the theoretical arrival time of the
+ * next job of its job ids, which moves one emission interval forward with every job let through. A job arriving
+ * earlier than that time by no more than the burst tolerance goes through at once, later ones exceed the limit.
+ * Refilling is implied by the passing of time, so a bucket is updated with a single compare-and-set and nothing
+ * refills buckets in the background.
+ * <p>
+ * Buckets sit in a fixed table indexed by a hash of the job id, so the limiter takes the same memory whatever the
+ * number of job ids. Job ids sharing a slot share its budget, which only ever makes their limit stricter. A
+ * numeric job id hashes like its decimal string.
+ * <p>
+ * With the delaying policy, a job exceeding the limit is held on the timing wheel of the pool until the time it
+ * would have gone through, then queued by the timer thread. Every slot counts its delayed jobs not queued yet, and
+ * jobs of a slot with delayed jobs are delayed too, even when they are within the limit, so that they can not
+ * overtake them. A delayed job has been accepted, so once due it waits for room in a full lane whatever the overflow
+ * policy, see {@link TimingWheel#delay(String, TimingWheel.Accepted, long)}.
+ */
+final class RateLimiter {
+
+    /**
+     * Number of buckets, a power of two.
+     */
+    static final int SLOTS = 1 << 16;
+
+    private static final int MASK = SLOTS - 1;
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final TimingWheel timers;
+    private final long interval;
+    private final long tolerance;
+    private final RateLimitPolicy policy;
+    private final long origin = System.nanoTime();
+    private final AtomicLongArray arrivals = new AtomicLongArray(SLOTS);
+    private final AtomicIntegerArray delayed;
+
+    /**
+     * @param pool          pool running the jobs
+     * @param timers        timing wheel holding the delayed jobs
+     * @param jobsPerSecond sustained rate of jobs per job id
+     * @param burst         number of jobs a job id may submit at once after being idle
+     * @param policy        what to do with a job exceeding the limit
+     */
+    RateLimiter(ThreadPoolWithJobAffinityExecutor pool, TimingWheel timers, double jobsPerSecond, int burst,
+                RateLimitPolicy policy) {
+        this.pool = pool;
+        this.timers = timers;
+        this.interval = Math.max(1, (long) (1e9 / jobsPerSecond));
+        this.tolerance = (burst - 1) * interval;
+        this.policy = policy;
+        this.delayed = policy.delays() ? new AtomicIntegerArray(SLOTS) : null;
+    }
+
+    /**
+     * Takes a token for the job id, or applies the policy.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return false if the job is within the limit and must be queued, true if the policy took it over
+     * @throws RejectedExecutionException if the job exceeds the limit and the policy rejects it
+     */
+    boolean throttle(String jobId, Runnable job) {
+        int slot = LaneRouters.mix32(jobId.hashCode()) & MASK;
+        long wait = acquire(slot);
+        if (wait <= 0 && (delayed == null || delayed.get(slot) == 0))
+            return false;
+        exceeded(slot, jobId, job, wait);
+        return true;
+    }
+
+    /**
+     * Takes a token for the numeric job id, or applies the policy. Allocates nothing while within the limit.
+     *
+     * @param jobId a numeric job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @return false if the job is within the limit and must be queued, true if the policy took it over
+     * @throws RejectedExecutionException if the job exceeds the limit and the policy rejects it
+     */
+    boolean throttle(long jobId, Runnable job) {
+        int slot = LaneRouters.mix32(LaneRouters.decimalHashCode(jobId)) & MASK;
+        long wait = acquire(slot);
+        if (wait <= 0 && (delayed == null || delayed.get(slot) == 0))
+            return false;
+        exceeded(slot, Long.toString(jobId), job, wait);
+        return true;
+    }
+
+    /**
+     * @return nanoseconds until the job is within the limit, not positive if it is already. Only a delaying
+     * policy takes a token for a job exceeding the limit.
+     */
+    private long acquire(int slot) {
+        long now = System.nanoTime() - origin;
+        for (; ; ) {
+            long arrival = arrivals.get(slot);
+            long start = Math.max(arrival, now);
+            long wait = start - tolerance - now;
+            if (wait > 0 && delayed == null)
+                return wait;
+            if (arrivals.compareAndSet(slot, arrival, start + interval))
+                return wait;
+        }
+    }
+
+    private void exceeded(int slot, String jobId, Runnable job, long wait) {
+        if (delayed != null) {
+            delayed.incrementAndGet(slot);
+            timers.delay(jobId, new Delayed(slot, jobId, job), wait);
+        } else if (policy.handler() != null) {
+            policy.handler().accept(jobId, job);
+        } else {
+            throw new RejectedExecutionException("Rate limit exceeded by job id " + jobId);
+        }
+    }
+
+    /**
+     * @param job action taken from the timing wheel
+     * @return the job the action queues
+     */
+    static Runnable unwrap(Runnable job) {
+        return job instanceof Delayed ? ((Delayed) job).job : job;
+    }
+
+    /**
+     * Queues a delayed job once due, then lets the jobs of its slot through again.
+     */
+    private final class Delayed implements TimingWheel.Accepted {
+
+        final int slot;
+        final String jobId;
+        final Runnable job;
+
+        Delayed(int slot, String jobId, Runnable job) {
+            this.slot = slot;
+            this.jobId = jobId;
+            this.job = job;
+        }
+
+        @Override
+        public boolean offer() {
+            try {
+                if (!pool.offerAccepted(jobId, job))
+                    return false;
+            } catch (RuntimeException e) {
+                delayed.decrementAndGet(slot);
+                throw e;
+            }
+            delayed.decrementAndGet(slot);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            for (int idle = 0; !offer(); idle++) {
+                if (idle < 100)
+                    Thread.yield();
+                else
+                    LockSupport.parkNanos(100000L);
+            }
+        }
+    }
+}
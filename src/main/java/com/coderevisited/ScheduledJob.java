@@ -0,0 +1,32 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * A delayed or periodic job scheduled with {@link ThreadPoolWithJobAffinityExecutor#schedule} or
+ * {@link ThreadPoolWithJobAffinityExecutor#scheduleAtFixedRate}.
+ */
+public interface ScheduledJob {
+
+    /**
+     * @return job id the job runs for
+     */
+    String jobId();
+
+    /**
+     * Cancels the job. A run already queued on its lane and not yet started is skipped, a run in progress is not
+     * interrupted. A periodic job is not run again.
+     *
+     * @return false if the job had already been cancelled
+     */
+    boolean cancel();
+
+    /**
+     * @return whether the job has been cancelled, or is a periodic job that has thrown
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,197 @@
+package com.coderevisited;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Alternative to the lane model of {@link ThreadPoolWithJobAffinityExecutor}: jobs of a job id run in submission
+ * order and never concurrently, but not necessarily on the same thread.
+ * <p>
+ * Every job id with pending jobs has a serial queue. A serial queue schedules itself on a shared work-stealing
+ * {@link ForkJoinPool} when its first job arrives, runs up to {@link #BATCH_SIZE} jobs, and then either schedules
+ * itself again behind the work of other job ids or, once empty, releases the worker and is discarded. Job ids
+ * sharing a hash bucket therefore never wait for each other, and idle workers steal queued job ids from busy ones.
+ * <p>
+ * Jobs should not block for long: a blocked job holds a worker of the shared pool.
+ */
+public class SerialPerKeyExecutor implements ThreadPoolWithJobAffinity {
+
+    /**
+     * Maximum number of jobs a serial queue runs before giving its worker to other job ids.
+     */
+    static final int BATCH_SIZE = 64;
+
+    private final ForkJoinPool forkJoinPool;
+    private final boolean ownsPool;
+    private final ConcurrentMap<String, SerialQueue> queues = new ConcurrentHashMap<>();
+    private final Object terminationLock = new Object();
+    private volatile boolean running = true;
+
+    /**
+     * Runs job ids on a pool of its own, shut down with this executor.
+     *
+     * @param parallelism number of worker threads
+     */
+    public SerialPerKeyExecutor(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException();
+        this.forkJoinPool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null, true);
+        this.ownsPool = true;
+    }
+
+    /**
+     * Runs job ids on an existing pool, for instance {@link ForkJoinPool#commonPool()}, left running on shutdown.
+     * A pool in async mode runs job ids in the order they become ready, which is fairer.
+     *
+     * @param forkJoinPool shared pool
+     */
+    public SerialPerKeyExecutor(ForkJoinPool forkJoinPool) {
+        if (forkJoinPool == null)
+            throw new NullPointerException();
+        this.forkJoinPool = forkJoinPool;
+        this.ownsPool = false;
+    }
+
+    /**
+     * @return parallelism of the shared pool
+     */
+    @Override
+    public int poolSize() {
+        return forkJoinPool.getParallelism();
+    }
+
+    /**
+     * Appends the job to the serial queue of its job id, and schedules the queue if it was not already.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    @Override
+    public void submit(String jobId, Runnable job) {
+
+        if (jobId == null || job == null)
+            throw new NullPointerException();
+
+        SerialQueue[] toSchedule = new SerialQueue[1];
+        //both enqueueing and discarding a queue happen inside compute, so no job is left in a discarded queue
+        queues.compute(jobId, (key, queue) -> {
+            if (!running)
+                throw new RejectedExecutionException("Thread pool is terminated");
+            if (queue == null)
+                queue = new SerialQueue(key);
+            queue.jobs.add(job);
+            if (!queue.scheduled) {
+                queue.scheduled = true;
+                toSchedule[0] = queue;
+            }
+            return queue;
+        });
+        if (toSchedule[0] != null)
+            forkJoinPool.execute(toSchedule[0]);
+    }
+
+    /**
+     * Rejects new jobs and waits until every job id has run all of its jobs. Shuts the shared pool down as well if
+     * this executor created it.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        boolean interrupted = false;
+        synchronized (terminationLock) {
+            while (!queues.isEmpty()) {
+                try {
+                    terminationLock.wait(100);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (ownsPool) {
+            forkJoinPool.shutdown();
+            for (; ; ) {
+                try {
+                    if (forkJoinPool.awaitTermination(10000, TimeUnit.MILLISECONDS))
+                        break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @return number of job ids with jobs queued or running
+     */
+    int activeKeys() {
+        return queues.size();
+    }
+
+    /**
+     * Pending jobs of one job id. Scheduled on the shared pool at most once at a time.
+     */
+    private final class SerialQueue implements Runnable {
+
+        final String jobId;
+        final ConcurrentLinkedQueue<Runnable> jobs = new ConcurrentLinkedQueue<>();
+        /**
+         * Whether the queue is scheduled or running, guarded by the map entry of its job id.
+         */
+        boolean scheduled;
+
+        SerialQueue(String jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Runnable job = jobs.poll();
+                if (job == null)
+                    break;
+                try {
+                    job.run();
+                } catch (Throwable t) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            }
+            if (!jobs.isEmpty()) {
+                //still scheduled, let the job ids queued meanwhile go first
+                forkJoinPool.execute(this);
+                return;
+            }
+            boolean[] reschedule = new boolean[1];
+            queues.computeIfPresent(jobId, (key, queue) -> {
+                if (queue != this)
+                    return queue;
+                if (!jobs.isEmpty()) {
+                    reschedule[0] = true;
+                    return queue;
+                }
+                scheduled = false;
+                return null;
+            });
+            if (reschedule[0]) {
+                forkJoinPool.execute(this);
+            } else if (!running) {
+                synchronized (terminationLock) {
+                    terminationLock.notifyAll();
+                }
+            }
+        }
+    }
+}
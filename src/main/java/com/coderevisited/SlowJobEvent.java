@@ -0,0 +1,61 @@
+package com.coderevisited;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Flight Recorder event of a job that ran for at least the slow job threshold of its pool, see
+ * {@link ThreadPoolWithJobAffinityExecutor.Builder#slowJobThreshold(long, java.util.concurrent.TimeUnit)}. Committed
+ * by the thread that ran the job, once it has ended, and only while a recording has the event enabled.
+ */
+@Name("com.coderevisited.SlowJob")
+@Label("Slow Job")
+@Category("Thread Pool With Job Affinity")
+@Description("A job that ran for longer than the slow job threshold of its pool")
+@StackTrace(false)
+final class SlowJobEvent extends Event {
+
+    @Label("Job Id")
+    String jobId;
+
+    @Label("Lane")
+    String lane;
+
+    @Label("Queue Wait")
+    @Timespan
+    long queueWait;
+
+    @Label("Run Time")
+    @Timespan
+    long runTime;
+
+    /**
+     * Commits an event for a slow job, if a recording wants it.
+     *
+     * @param jobId     job id, null for the jobs of the pool itself
+     * @param lane      name of the lane thread
+     * @param queueWait nanoseconds between submission and start of the job
+     * @param runTime   nanoseconds spent running the job
+     */
+    static void emit(String jobId, String lane, long queueWait, long runTime) {
+        SlowJobEvent event = new SlowJobEvent();
+        if (!event.isEnabled())
+            return;
+        event.jobId = jobId;
+        event.lane = lane;
+        event.queueWait = queueWait;
+        event.runTime = runTime;
+        event.commit();
+    }
+}
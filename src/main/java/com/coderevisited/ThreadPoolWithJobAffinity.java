@@ -1,5 +1,9 @@
 package com.coderevisited;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * User :  Suresh
  * Date :  23/08/15
@@ -24,6 +28,87 @@ public interface ThreadPoolWithJobAffinity {
      */
     void submit(String jobId, Runnable job);
 
+    /**
+     * Execute a given job without tracking its outcome. Same as {@link #submit(String, Runnable)}, which allocates
+     * no future either; named after {@link java.util.concurrent.Executor#execute(Runnable)} for fire-and-forget
+     * callers.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    default void execute(String jobId, Runnable job) {
+        submit(jobId, job);
+    }
+
+    /**
+     * Execute a given task like {@link #submit(String, Runnable)} and return its result. The returned future is the
+     * job queued on the pool, so no other object is created per task. It completes on the thread running the task,
+     * so dependent stages added with the non-async methods of {@link CompletableFuture} run there too, in order
+     * with the jobs of the same job id. A task that throws completes the future exceptionally. Cancelling the
+     * future before the task starts skips the task.
+     *
+     * @param jobId a string containing job id.
+     * @param task  a Callable computing the result.
+     * @param <T>   result type
+     * @return future completed with the result of the task
+     */
+    default <T> CompletableFuture<T> submit(String jobId, Callable<T> task) {
+        if (task == null)
+            throw new NullPointerException();
+        JobFuture<T> future = new JobFuture<>(task);
+        submit(jobId, future);
+        return future;
+    }
+
+    /**
+     * Execute a given job of a numeric job id. Same as submitting it with the decimal string of the job id, so
+     * jobs of 42 and of "42" are ordered with respect to each other. Implementations routing numeric job ids
+     * without building that string override this method.
+     *
+     * @param jobId a numeric job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    default void submit(long jobId, Runnable job) {
+        submit(Long.toString(jobId), job);
+    }
+
+    /**
+     * Execute a given job of a numeric job id, see {@link #submit(long, Runnable)}.
+     *
+     * @param jobId a numeric job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    default void submit(int jobId, Runnable job) {
+        submit((long) jobId, job);
+    }
+
+    /**
+     * Execute every job of a batch, with the same guarantees as submitting them one by one in batch order.
+     * Implementations may queue the jobs of a thread in groups rather than one at a time. If a job is rejected,
+     * jobs of the batch may have been queued already.
+     *
+     * @param batch jobs with their job ids, may be reused once this method returns.
+     */
+    default void submitAll(JobBatch batch) {
+        batch.submitEach(this);
+    }
+
+    /**
+     * Return an executor submitting every job it is given with the given job id, so that the jobs run on the thread
+     * of that job id, in order with its other jobs. Meant for the async stages of a {@link CompletableFuture} that
+     * must stay on the thread owning the state of a job id, e.g. {@code future.thenApplyAsync(fn, pool.forKey(id))}.
+     * Implementations may run a job in the calling thread when it already is the thread of the job id and no job
+     * is waiting ahead of it.
+     *
+     * @param jobId a string containing job id.
+     * @return executor bound to the job id
+     */
+    default Executor forKey(String jobId) {
+        if (jobId == null)
+            throw new NullPointerException();
+        return job -> submit(jobId, job);
+    }
+
     /**
      * Graceful shutdown of the thread pool.
      * Waits for all jobs to complete before shutdown.
@@ -1,10 +1,27 @@
 package com.coderevisited;
 
 
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BinaryOperator;
 
 
 /**
@@ -14,25 +31,203 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 
 /**
- * This class maintains the map of JobId to Single Thread executor.
- * Since this is a fixed sized thread pool and to accommodate all JobIds, map key is generated
- * by doing operation (hashcode of JobId) % poolSize
+ * This class maintains a fixed array of lanes, one slot per bucket. Each lane is backed by a single thread
+ * draining a bounded ring buffer of jobs.
+ * Since this is a fixed sized thread pool and to accommodate all JobIds, bucket number is generated
+ * by the pool's {@link LaneRouter}, by default doing operation (hashcode of JobId) % poolSize
+ * <p>
+ * Submission never takes a lock: lanes are created lazily by a compare-and-set on their slot and shutdown
+ * is signalled by a terminal marker placed in every slot.
+ * <p>
+ * A submitter finding its lane full waits for room by default, other behaviours are selected with
+ * {@link Builder#overflowPolicy(OverflowPolicy)} and {@link Builder#blockTimeout(long, TimeUnit)}.
+ * <p>
+ * Jobs superseded by newer ones, such as market data updates, can be submitted with
+ * {@link #submitConflated(String, Runnable)} so that a job id has at most one of them queued.
+ * <p>
+ * {@link #forKey(String)} returns an {@link Executor} bound to the lane of a job id, to chain async stages on it.
+ * <p>
+ * A job touching several job ids, such as a transfer between two accounts, is ordered with the jobs of all of them
+ * by {@link #submitMultiKey(Collection, Runnable)}.
+ * <p>
+ * Jobs given as a job id, a handler id and a payload can be made durable with
+ * {@link #submitDurable(String, int, byte[])}, see {@link Builder#journal(Path)}.
+ * <p>
+ * Delayed and periodic jobs of a job id are scheduled with {@link #schedule(String, Runnable, long, TimeUnit)} and
+ * {@link #scheduleAtFixedRate(String, Runnable, long, long, TimeUnit)}, on a hashed timing wheel that submits them
+ * to the lane of their job id when due.
+ * <p>
+ * Optionally, hot job ids are moved between lanes at run time, see {@link Builder#rebalancing(long, TimeUnit)}, and
+ * job ids flooding the pool are throttled before they reach their lane, see
+ * {@link Builder#rateLimit(double, int, RateLimitPolicy)}.
+ * <p>
+ * A pool built with {@link Builder#maxPoolSize(int)} can be resized while it runs, see {@link #resize(int)}.
+ * <p>
+ * Producers submitting many small jobs can have them buffered per thread and published to the lanes in batches,
+ * see {@link Builder#producerBuffering(int, long, TimeUnit)} and {@link #flush()}.
+ * <p>
+ * Lane threads are started on the first job routed to their lane, unless {@link Builder#prestartLanes(boolean)} is
+ * set. {@link Builder#warmUp(int, Runnable)} runs a warm-up workload before the pool is returned.
+ * <p>
+ * Each lane keeps counters and, unless disabled, histograms of queue wait and run time. They are read through
+ * {@link #metrics()} or over JMX once {@link #registerMBean()} has been called.
+ * <p>
+ * Each lane also records its latest jobs in a flight recorder, read with {@link #flightRecords(int)} or
+ * {@link #dumpFlightRecorder()}, and reports jobs running for longer than a threshold as Flight Recorder events,
+ * see {@link Builder#slowJobThreshold(long, TimeUnit)}.
  */
 public class ThreadPoolWithJobAffinityExecutor implements ThreadPoolWithJobAffinity {
 
-    private final int poolSize;
+    private static final BinaryOperator<Runnable> LATEST = (pending, job) -> job;
 
-    final ConcurrentMap<Integer, ExecutorService> map;
-    private Lock lock = new ReentrantLock();
-    private AtomicBoolean state = new AtomicBoolean(true);
+    /**
+     * Jobs per batch, and job ids per lane, of the warm-up workload.
+     */
+    private static final int WARM_UP_BATCH_SIZE = 64;
+
+    private volatile int poolSize;
+    private final int laneCapacity;
+    private final boolean metricsEnabled;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final WaitStrategy[] waitStrategies;
+    private final LaneRouter router;
+    private final String name;
+
+    private final AtomicReferenceArray<Lane> lanes;
+    private final LaneStats[] stats;
+    private final FlightRecorder[] recorders;
+    private final long slowJobNanos;
+    private final KeyRebalancer rebalancer;
+    private final LaneResizer resizer;
+    private final Conflator conflator = new Conflator(this);
+    private final TimingWheel timers;
+    private final RateLimiter limiter;
+    private final ProducerBuffers buffers;
+    /**
+     * Scratch space of the threads submitting batches, see {@link #submitGrouped(JobBatch)}.
+     */
+    private final ThreadLocal<Grouping> groupings = ThreadLocal.withInitial(Grouping::new);
+    /**
+     * Taken while the parts of a multi-key job are queued, so that multi-key jobs sharing lanes are queued in the
+     * same order on all of them.
+     */
+    private final Object multiKeyLock = new Object();
+    /**
+     * Journal of durable jobs, opened by the builder before the pool is returned.
+     */
+    private Journal journal;
+    private final AtomicReference<ObjectName> mbeanName = new AtomicReference<>();
+    /**
+     * Released once every lane slot has been closed by a shutdown.
+     */
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile boolean running = true;
 
 
     public ThreadPoolWithJobAffinityExecutor(int corePoolSize) {
+        this(builder(corePoolSize));
+    }
 
-        if (corePoolSize <= 0)
+    /**
+     * @param corePoolSize number of lanes
+     * @param laneCapacity maximum number of jobs waiting in a lane, rounded up to a power of two.
+     *                     A submitter finding its lane full waits until there is room.
+     */
+    public ThreadPoolWithJobAffinityExecutor(int corePoolSize, int laneCapacity) {
+        this(builder(corePoolSize).laneCapacity(laneCapacity));
+    }
+
+    private ThreadPoolWithJobAffinityExecutor(Builder builder) {
+        this(builder, Lane.nextPoolName());
+    }
+
+    private ThreadPoolWithJobAffinityExecutor(Builder builder, String name) {
+
+        if (builder.poolSize <= 0 || builder.laneCapacity <= 0 || builder.laneCapacity > 1 << 30)
+            throw new IllegalArgumentException();
+        if (builder.router == null)
+            throw new NullPointerException();
+        if (builder.rebalanceInterval < 0 || !(builder.rebalanceThreshold >= 1))
+            throw new IllegalArgumentException();
+        if (builder.maxPoolSize != 0 && builder.maxPoolSize < builder.poolSize)
+            throw new IllegalArgumentException();
+        //rebalancing pins job ids to lanes that a resize would move under it
+        if (builder.maxPoolSize != 0 && builder.rebalanceInterval != 0)
+            throw new IllegalArgumentException("Rebalancing is not available with resizing");
+        int laneCount = Math.max(builder.poolSize, builder.maxPoolSize);
+        if (builder.overflowPolicy == null)
+            throw new NullPointerException();
+        if (builder.blockTimeoutNanos < 0)
+            throw new IllegalArgumentException();
+        if (builder.waitStrategy == null || builder.warmUpJob == null)
+            throw new NullPointerException();
+        if (builder.warmUpJobs < 0 || builder.timerTickNanos <= 0)
+            throw new IllegalArgumentException();
+        if (builder.rateLimitPolicy != null && (!(builder.jobsPerSecond > 0) || builder.rateLimitBurst < 1))
+            throw new IllegalArgumentException();
+        if (builder.journalSegmentSize < 64)
             throw new IllegalArgumentException();
-        this.poolSize = corePoolSize;
-        this.map = new ConcurrentHashMap<>();
+        if (builder.flightRecorderSize < 0 || builder.flightRecorderSize > 1 << 24 || builder.slowJobNanos < 0)
+            throw new IllegalArgumentException();
+        if (builder.producerBuffering && (builder.producerBatchSize < 1 || builder.producerMaxDelayNanos <= 0))
+            throw new IllegalArgumentException();
+        //these submit batches job by job, which would buffer the jobs again
+        if (builder.producerBuffering && (builder.rebalanceInterval != 0 || builder.maxPoolSize != 0
+                || builder.rateLimitPolicy != null))
+            throw new IllegalArgumentException("Producer buffering is not available with rebalancing, resizing "
+                    + "or rate limiting");
+        for (Map.Entry<Integer, WaitStrategy> entry : builder.laneWaitStrategies.entrySet()) {
+            if (entry.getValue() == null)
+                throw new NullPointerException();
+            if (entry.getKey() < 0 || entry.getKey() >= laneCount)
+                throw new IllegalArgumentException("No lane " + entry.getKey() + " in a pool of " + laneCount);
+        }
+        //a discarded fence would leave the jobs held for a moving job id stranded
+        if (builder.overflowPolicy == OverflowPolicy.DROP_OLDEST && builder.rebalanceInterval != 0)
+            throw new IllegalArgumentException("Rebalancing is not available with " + OverflowPolicy.DROP_OLDEST);
+        if (builder.overflowPolicy == OverflowPolicy.DROP_OLDEST && builder.maxPoolSize != 0)
+            throw new IllegalArgumentException("Resizing is not available with " + OverflowPolicy.DROP_OLDEST);
+        this.poolSize = builder.poolSize;
+        this.laneCapacity = builder.laneCapacity;
+        this.metricsEnabled = builder.metricsEnabled;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.blockTimeoutNanos = builder.blockTimeoutNanos;
+        this.waitStrategies = new WaitStrategy[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            WaitStrategy laneStrategy = builder.laneWaitStrategies.get(i);
+            waitStrategies[i] = laneStrategy != null ? laneStrategy : builder.waitStrategy;
+        }
+        this.router = builder.router;
+        this.name = name;
+        this.lanes = new AtomicReferenceArray<>(laneCount);
+        this.stats = new LaneStats[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            stats[i] = new LaneStats(metricsEnabled);
+        }
+        this.recorders = new FlightRecorder[laneCount];
+        if (builder.flightRecorderSize != 0) {
+            for (int i = 0; i < laneCount; i++) {
+                recorders[i] = new FlightRecorder(builder.flightRecorderSize);
+            }
+        }
+        this.slowJobNanos = builder.slowJobNanos;
+        this.rebalancer = builder.rebalanceInterval == 0 ? null : new KeyRebalancer(this, poolSize,
+                builder.rebalanceThreshold, builder.rebalanceInterval, name + "-rebalancer");
+        this.resizer = builder.maxPoolSize == 0 ? null : new LaneResizer(this, poolSize, laneCount);
+        this.timers = new TimingWheel(this, builder.timerTickNanos, name + "-timer");
+        this.limiter = builder.rateLimitPolicy == null ? null : new RateLimiter(this, timers, builder.jobsPerSecond,
+                builder.rateLimitBurst, builder.rateLimitPolicy);
+        this.buffers = builder.producerBuffering ? new ProducerBuffers(this, timers, builder.producerBatchSize,
+                builder.producerMaxDelayNanos) : null;
+    }
+
+    /**
+     * @param corePoolSize number of lanes
+     * @return a builder for a pool with the given number of lanes
+     */
+    public static Builder builder(int corePoolSize) {
+        return new Builder(corePoolSize);
     }
 
     @Override
@@ -41,7 +236,119 @@ public class ThreadPoolWithJobAffinityExecutor implements ThreadPoolWithJobAffin
     }
 
     /**
-     * Initiate a new singleThreaded executor if there is a JobId that was not seen earlier.
+     * Starts the thread of every lane not started yet, instead of on the first job routed to it, so that the first
+     * jobs do not pay for thread creation. Does nothing once the pool is shut down.
+     */
+    public void prestartLanes() {
+        for (int i = 0; i < poolSize && running; i++) {
+            lane(i);
+        }
+    }
+
+    /**
+     * Changes the number of lanes while the pool runs, for instance to add lanes for a busy period. Only the job ids
+     * whose lane changes with the number of lanes move, and each of them starts running on its new lane once all its
+     * jobs accepted by its old lane have completed, so jobs of a job id still run one at a time and in submission
+     * order. Meanwhile its new jobs are held by the pool. Lanes beyond the new size are shut down once they have run
+     * their jobs. Returns once the resize is complete. Resizes are serialized.
+     * <p>
+     * How many job ids move depends on the router: a jump consistent hash, see {@link LaneRouters#jumpConsistentHash()}, moves the
+     * fewest, while the default modulo moves most of them.
+     *
+     * @param newSize new number of lanes, at most the maximum pool size set with {@link Builder#maxPoolSize(int)}
+     * @throws IllegalStateException      if the pool was not built with a maximum pool size
+     * @throws IllegalArgumentException   if the new size is not positive or above the maximum pool size
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    public void resize(int newSize) {
+        if (resizer == null)
+            throw new IllegalStateException("Resizing requires a maximum pool size");
+        if (newSize <= 0 || newSize > lanes.length())
+            throw new IllegalArgumentException("Pool size " + newSize + " not in [1, " + lanes.length() + "]");
+        resizer.resize(newSize);
+    }
+
+    void updatePoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return whether the lane of the given bucket has been started and not shut down
+     */
+    boolean isStarted(int bucketNumber) {
+        Lane lane = lanes.get(bucketNumber);
+        return lane != null && lane != Lane.TERMINATED;
+    }
+
+    /**
+     * Shuts down a lane no job id is routed to any more, once it has run its jobs, and frees its slot for a later
+     * resize. The metrics of the lane start over.
+     *
+     * @param bucketNumber bucket number
+     */
+    void retireLane(int bucketNumber) {
+        Lane lane = lanes.get(bucketNumber);
+        if (lane == null || lane == Lane.TERMINATED)
+            return;
+        lane.shutdown();
+        lane.awaitTermination();
+        stats[bucketNumber] = new LaneStats(metricsEnabled);
+        //publishes the new stats to the submitter creating the next lane of the slot
+        lanes.compareAndSet(bucketNumber, lane, null);
+    }
+
+    /**
+     * Runs the warm-up workload of the builder through a scratch pool with the same settings, then shuts it down.
+     * Compiled code is shared by all pools, so the submit and dispatch paths of this pool are warm afterwards,
+     * while its metrics only ever show real jobs. Jobs are submitted with string and numeric job ids, one at a time
+     * and in batches. Rejected jobs are ignored. The scratch pool has no rate limit, which would slow the warm-up
+     * down or hand its jobs to the handler of the user, and reports no slow job.
+     */
+    private void warmUp(Builder builder) {
+        ThreadPoolWithJobAffinityExecutor scratch = new ThreadPoolWithJobAffinityExecutor(builder.forWarmUp(),
+                name + "-warm-up");
+        Runnable job = builder.warmUpJob;
+        JobBatch batch = new JobBatch(WARM_UP_BATCH_SIZE);
+        int jobIds = poolSize * WARM_UP_BATCH_SIZE;
+        try {
+            for (int i = 0; i < builder.warmUpJobs; i++) {
+                int jobId = i % jobIds;
+                try {
+                    switch (i % 3) {
+                        case 0:
+                            scratch.submit(Integer.toString(jobId), job);
+                            break;
+                        case 1:
+                            scratch.submit((long) jobId, job);
+                            break;
+                        default:
+                            batch.add(jobId, job);
+                            if (batch.size() == WARM_UP_BATCH_SIZE)
+                                submitWarmUpBatch(scratch, batch);
+                    }
+                } catch (RejectedExecutionException e) {
+                    //rejecting is worth warming up too
+                }
+            }
+            if (!batch.isEmpty())
+                submitWarmUpBatch(scratch, batch);
+        } finally {
+            scratch.shutdown();
+        }
+    }
+
+    private static void submitWarmUpBatch(ThreadPoolWithJobAffinityExecutor scratch, JobBatch batch) {
+        try {
+            scratch.submitAll(batch);
+        } catch (RejectedExecutionException e) {
+            //jobs of other lanes may have been queued, the warm-up carries on with the next batch
+        }
+        batch.clear();
+    }
+
+    /**
+     * Initiate a new lane if there is a bucket that was not seen earlier. With producer buffering the job is added
+     * to the buffer of the calling thread instead, see {@link Builder#producerBuffering(int, long, TimeUnit)}.
      *
      * @param jobId a string containing job id.
      * @param job   a Runnable representing the job to be executed.
@@ -52,55 +359,978 @@ public class ThreadPoolWithJobAffinityExecutor implements ThreadPoolWithJobAffin
         if (jobId == null || job == null)
             throw new NullPointerException();
 
-        int bucketNumber = getPool(jobId);
-        if (state.get()) {
-            //check if pool is not terminated
-            lock.lock();
+        if (buffers != null) {
+            if (!running)
+                throw new RejectedExecutionException("Thread pool is terminated");
+            buffers.add(jobId, job);
+            return;
+        }
+        submitDirect(jobId, job);
+    }
+
+    /**
+     * Submits a job without going through the producer buffer of the calling thread, for jobs submitted by the
+     * threads of the pool, such as due scheduled jobs.
+     */
+    void submitDirect(String jobId, Runnable job) {
+        if (!throttle(jobId, job))
+            submitAccepted(jobId, job);
+    }
+
+    /**
+     * Lets a job submitted by the threads of the pool through the rate limiter, if any. A job let through is then
+     * queued with {@link #submitAccepted(String, Runnable)} or {@link #offerAccepted(String, Runnable)}.
+     *
+     * @return true if the rate limiter took the job over, false if it must be queued
+     * @throws RejectedExecutionException if the pool is terminated, or the rate limiter rejects the job
+     */
+    boolean throttle(String jobId, Runnable job) {
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        return limiter != null && limiter.throttle(jobId, job);
+    }
+
+    /**
+     * Publishes the jobs buffered by the calling thread to their lanes, so that they no longer wait for the batch
+     * size or the longest delay set with {@link Builder#producerBuffering(int, long, TimeUnit)}. Does nothing without
+     * producer buffering. The buffer is empty once this method returns, whether it throws or not.
+     *
+     * @throws RejectedExecutionException if a lane is full and the overflow policy refuses its jobs, or the pool is
+     *                                    terminated. Jobs of other lanes may have been queued already.
+     */
+    public void flush() {
+        if (buffers != null)
+            buffers.flush();
+    }
+
+    /**
+     * Records a job in the journal of the pool, then submits it like {@link #submit(String, Runnable)}. The job
+     * calls the handler registered under the handler id with the payload, and acknowledges its record once done,
+     * whether the handler returned or threw. Should the process die first, the job is run again by the next pool
+     * opening the journal, in order with the other durable jobs of its job id. Jobs are therefore run at least
+     * once.
+     * <p>
+     * Recording costs a copy of the record into a memory-mapped file, under a lock shared by all submitters of the
+     * pool, and acknowledging a single byte store.
+     *
+     * @param jobId     a string containing job id.
+     * @param handlerId id of a handler registered with {@link Builder#durableHandler(int, DurableJobHandler)}
+     * @param payload   payload given to the handler, must not be modified once submitted
+     * @throws IllegalStateException      if the pool was not built with a journal
+     * @throws IllegalArgumentException   if no handler is registered under the handler id, or the record does not
+     *                                    fit in a journal segment
+     * @throws RejectedExecutionException if the pool is shut down, or the job is refused. A refused job is
+     *                                    acknowledged, and not run after a restart.
+     */
+    public void submitDurable(String jobId, int handlerId, byte[] payload) {
+        if (jobId == null || payload == null)
+            throw new NullPointerException();
+        if (journal == null)
+            throw new IllegalStateException("Durable jobs require a journal");
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        //durable jobs are not buffered, so a refused one can be acknowledged
+        flush();
+        Journal.Record record = journal.append(jobId, handlerId, payload);
+        try {
+            submitDirect(jobId, record);
+        } catch (RuntimeException e) {
+            record.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the journal of the builder, and queues the durable jobs left pending by the previous pool, in journal
+     * order, before any other job.
+     */
+    private void openJournal(Builder builder) {
+        journal = new Journal(builder.journalDirectory, builder.journalSegmentSize,
+                new HashMap<>(builder.durableHandlers));
+        for (Journal.Record record : journal.takeReplay()) {
+            putOnLane(laneOf(record.jobId()), record.jobId(), 0L, record);
+        }
+    }
+
+    /**
+     * Queues a job that has gone through the rate limiter, if any.
+     */
+    void submitAccepted(String jobId, Runnable job) {
+        if (conflator.isActive())
+            conflator.seal(jobId);
+        submitRouted(jobId, job);
+    }
+
+    /**
+     * Queues a job that has gone through the rate limiter, if any, as {@link #submitAccepted(String, Runnable)}
+     * does, but never waits: a full lane leaves the job to the caller, whatever the overflow policy. For the timer
+     * thread.
+     *
+     * @return false if the lane of the job id is full
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    boolean offerAccepted(String jobId, Runnable job) {
+        if (conflator.isActive())
+            conflator.seal(jobId);
+        if (rebalancer != null)
+            return rebalancer.offer(jobId, job);
+        if (resizer != null)
+            return resizer.offer(jobId, job);
+        return offerOnLane(getPool(jobId), jobId, job);
+    }
+
+    /**
+     * Latest-value-wins submission: while a conflated job of the job id is queued and not yet started, the job
+     * replaces it instead of being queued too. Lanes therefore hold at most one conflated job per job id, however
+     * bursty its submissions are.
+     * <p>
+     * A conflated job runs at the position of the pending job it replaced. Jobs submitted with the other submit
+     * methods end the conflation window: a conflated job submitted after one of them is queued behind it, so the
+     * jobs of a job id still run in submission order, less the replaced ones.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    public void submitConflated(String jobId, Runnable job) {
+        submitConflated(jobId, job, LATEST);
+    }
+
+    /**
+     * Conflating submission with a merge function: while a conflated job of the job id is queued and not yet
+     * started, it is replaced by the result of {@code merge.apply(pending, job)}, for instance a job applying both
+     * updates. See {@link #submitConflated(String, Runnable)}.
+     * <p>
+     * If the lane refuses the pending job, the exception is thrown to the submitter that queued it, and jobs merged
+     * into it meanwhile are discarded along with it.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @param merge combines the pending job with the submitted one. Runs in the submitting thread while
+     *              submissions of the same job id wait, so it should be quick and not submit to this pool.
+     */
+    public void submitConflated(String jobId, Runnable job, BinaryOperator<Runnable> merge) {
+
+        if (jobId == null || job == null || merge == null)
+            throw new NullPointerException();
+
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+
+        //jobs buffered by this thread were submitted first
+        flush();
+        conflator.submit(jobId, job, merge);
+    }
+
+    /**
+     * Submits a job ordered with the jobs of several job ids: it runs once every job of each of them submitted before
+     * it has completed, and their jobs submitted after it wait for it to complete. Job ids of a single lane just
+     * queue the job there. Otherwise a part of the job is queued on each lane owning some of the job ids. A lane
+     * reaching its part holds back the later jobs of those job ids only, and goes on with its other jobs, so lanes
+     * never wait for each other. The lane reaching the last part runs the job in its thread, which may not be the
+     * lane of every job id, then releases the job ids on the other lanes.
+     * <p>
+     * Parts are queued under a lock of the pool, waiting for room whatever the overflow policy, so multi-key jobs
+     * are not meant for the hot path. Jobs held back are counted as completed once they run, but their queue wait
+     * and run time are not recorded. Multi-key jobs are not rate limited. Jobs buffered by the calling thread are
+     * published first. If a shutdown now gives the job up, it is returned under its first job id.
+     *
+     * @param jobIds job ids of the job, duplicates are ignored
+     * @param job    a Runnable representing the job to be executed.
+     * @throws IllegalArgumentException   if no job id is given
+     * @throws IllegalStateException      with rebalancing or resizing, which move job ids between lanes, or with
+     *                                    {@link OverflowPolicy#DROP_OLDEST}, which could drop a part
+     * @throws RejectedExecutionException if the pool is terminated. If some parts were queued already, the job does
+     *                                    not run, and its job ids are released once those parts are reached.
+     */
+    public void submitMultiKey(Collection<String> jobIds, Runnable job) {
+
+        if (jobIds == null || job == null)
+            throw new NullPointerException();
+        if (rebalancer != null || resizer != null)
+            throw new IllegalStateException("Multi-key jobs are not available with rebalancing or resizing");
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST)
+            throw new IllegalStateException("Multi-key jobs are not available with " + OverflowPolicy.DROP_OLDEST);
+
+        //job ids by lane, lanes in increasing order
+        TreeMap<Integer, List<String>> byLane = new TreeMap<>();
+        for (String jobId : jobIds) {
+            if (jobId == null)
+                throw new NullPointerException();
+            List<String> ofLane = byLane.computeIfAbsent(getPool(jobId), lane -> new ArrayList<>());
+            if (!ofLane.contains(jobId))
+                ofLane.add(jobId);
+        }
+        if (byLane.isEmpty())
+            throw new IllegalArgumentException("No job id");
+
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+
+        //jobs buffered by this thread were submitted first
+        flush();
+        if (conflator.isActive()) {
+            for (List<String> ofLane : byLane.values()) {
+                for (String jobId : ofLane) {
+                    conflator.seal(jobId);
+                }
+            }
+        }
+        if (byLane.size() == 1) {
+            Map.Entry<Integer, List<String>> only = byLane.firstEntry();
+            submitToLane(only.getKey(), only.getValue().get(0), job);
+            return;
+        }
+        MultiKeyJob multiKeyJob = new MultiKeyJob(jobIds.iterator().next(), job, byLane.size());
+        synchronized (multiKeyLock) {
+            int queued = 0;
             try {
-                if (state.get()) {
-                    //Check again if pool is not terminated, to avoid cases where when one thread is waiting for lock,
-                    //another thread terminated this pool
-                    if (!map.containsKey(bucketNumber)) {
-                        map.put(bucketNumber, Executors.newSingleThreadExecutor());
-                    }
-                    map.get(bucketNumber).submit(job);
-                } else {
-                    throw new RejectedExecutionException("Thread pool is terminated");
+                for (Map.Entry<Integer, List<String>> ofLane : byLane.entrySet()) {
+                    Lane lane = lane(ofLane.getKey());
+                    if (lane == Lane.TERMINATED)
+                        throw new RejectedExecutionException("Thread pool is terminated");
+                    lane.put(multiKeyJob.addPart(ofLane.getValue(), lane.gate()));
+                    queued++;
                 }
-            } finally {
-                lock.unlock();
+            } catch (RejectedExecutionException e) {
+                multiKeyJob.cancel(queued);
+                throw e;
             }
-        } else {
+        }
+    }
+
+    /**
+     * Returns an executor bound to the lane of the job id. A job given to it from a job running on that lane, with
+     * no job queued behind the running one, runs at once in the lane thread instead of being queued, since it would
+     * run next on that thread anyway. Otherwise the job is submitted as with {@link #submit(String, Runnable)}.
+     * Nested inline runs are bounded, deeper jobs are queued. With rebalancing enabled jobs are always queued, as
+     * the lane of a job id may change, and with producer buffering they are always buffered, as jobs of the job id
+     * may be waiting in a buffer.
+     *
+     * @param jobId a string containing job id.
+     * @return executor bound to the job id
+     */
+    @Override
+    public Executor forKey(final String jobId) {
+        if (jobId == null)
+            throw new NullPointerException();
+        if (rebalancer != null || resizer != null || limiter != null || buffers != null)
+            return ThreadPoolWithJobAffinity.super.forKey(jobId);
+        final int bucketNumber = getPool(jobId);
+        return job -> {
+            if (job == null)
+                throw new NullPointerException();
+            Lane lane = lanes.get(bucketNumber);
+            //a lane that is not running yet, or any longer, can not be the calling thread
+            if (running && lane != null && lane.runInline(job))
+                return;
+            submit(jobId, job);
+        };
+    }
+
+    /**
+     * Submits a job under its job id once the delay has elapsed, as with {@link #submit(String, Runnable)}, so it
+     * runs in order with the other jobs of the job id submitted by then. Jobs of a job id due within the same tick
+     * are submitted in the order they were scheduled. Scheduling costs one small object, so millions of jobs may be
+     * pending. Due jobs are submitted by a single timer thread, which never waits for room: a job finding its lane
+     * full is tried again at every tick, whatever the overflow policy, ahead of the later jobs of its job id.
+     *
+     * @param jobId a string containing job id.
+     * @param job   a Runnable representing the job to be executed.
+     * @param delay delay before the job is submitted, rounded up to the next tick, see {@link Builder#timerTick}
+     * @param unit  unit of the delay
+     * @return handle to cancel the job
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    public ScheduledJob schedule(String jobId, Runnable job, long delay, TimeUnit unit) {
+        return schedule(jobId, job, delay, 0, unit);
+    }
+
+    /**
+     * Submits a job under its job id after the initial delay, then every period, as with
+     * {@link #schedule(String, Runnable, long, TimeUnit)}. Runs of the job never overlap, as they run on the lane of
+     * the job id; if a run takes longer than the period, later runs start late. A run that throws cancels the job.
+     * Periods shorter than a tick run once per tick. Runs due while the previous one still waits for room in a full
+     * lane are skipped.
+     *
+     * @param jobId        a string containing job id.
+     * @param job          a Runnable representing the job to be executed.
+     * @param initialDelay delay before the first run
+     * @param period       period between two successive runs
+     * @param unit         unit of the delay and period
+     * @return handle to cancel the job
+     * @throws IllegalArgumentException   if the period is not positive
+     * @throws RejectedExecutionException if the pool is shut down
+     */
+    public ScheduledJob scheduleAtFixedRate(String jobId, Runnable job, long initialDelay, long period,
+                                            TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException();
+        return schedule(jobId, job, initialDelay, period, unit);
+    }
+
+    private ScheduledJob schedule(String jobId, Runnable job, long delay, long period, TimeUnit unit) {
+        if (jobId == null || job == null || unit == null)
+            throw new NullPointerException();
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        return timers.schedule(jobId, job, unit.toNanos(delay), unit.toNanos(period));
+    }
+
+    /**
+     * Queues a job on the lane of its job id, through the rebalancer if there is one.
+     */
+    void submitRouted(String jobId, Runnable job) {
+        if (rebalancer != null)
+            rebalancer.submit(jobId, job);
+        else if (resizer != null)
+            resizer.submit(jobId, 0L, job);
+        else
+            submitToLane(getPool(jobId), jobId, job);
+    }
+
+    /**
+     * @return number of job ids with a conflated job queued and not yet started
+     */
+    int pendingConflatedJobs() {
+        return conflator.pendingCount();
+    }
+
+    /**
+     * Routes a numeric job id with {@link LaneRouter#lane(long, int)}, which allocates nothing for the built-in
+     * routers. With rebalancing enabled the job id is tracked by its decimal string, which is built per job. With
+     * producer buffering the job is added to the buffer of the calling thread.
+     *
+     * @param jobId a numeric job id.
+     * @param job   a Runnable representing the job to be executed.
+     */
+    @Override
+    public void submit(long jobId, Runnable job) {
+
+        if (job == null)
+            throw new NullPointerException();
+
+        if (!running)
             throw new RejectedExecutionException("Thread pool is terminated");
+
+        if (buffers != null) {
+            buffers.add(jobId, job);
+            return;
         }
+
+        if (limiter != null && limiter.throttle(jobId, job))
+            return;
+        if (conflator.isActive())
+            conflator.seal(Long.toString(jobId));
+        if (rebalancer != null)
+            rebalancer.submit(Long.toString(jobId), job);
+        else if (resizer != null)
+            resizer.submit(null, jobId, job);
+        else
+            submitToLane(getPool(jobId), jobId, job);
     }
 
     /**
-     * Shuts down all single threaded executors. And awaits their termination.
-     * Removes references of those executors from map
-     * Updates global reference that this pool is terminated.
+     * Groups the jobs of the batch by lane, keeping batch order within each group, and queues each group with a
+     * single claim on the lane's buffer and a single wake-up of its thread, as far as the lane has room. With
+     * rebalancing, resizing or rate limiting enabled the jobs are submitted one by one. With producer buffering the
+     * buffer of the calling thread is published first, and the batch is not buffered.
+     *
+     * @param batch jobs with their job ids, may be reused once this method returns.
+     * @throws RejectedExecutionException if the pool is terminated, or a lane is full and the overflow policy
+     *                                    refuses its jobs. Groups of other lanes may have been queued already.
      */
-    public void shutdown() {
-        lock.lock();
-        //acquire lock and make sure no more submissions from now
+    @Override
+    public void submitAll(JobBatch batch) {
+
+        if (!running)
+            throw new RejectedExecutionException("Thread pool is terminated");
+
+        flush();
+        submitGrouped(batch);
+    }
+
+    /**
+     * Queues a batch as {@link #submitAll(JobBatch)} does, whether the pool is running or not, so that producer
+     * buffers can be published on shutdown.
+     */
+    void submitGrouped(JobBatch batch) {
+        if (rebalancer != null || resizer != null || limiter != null || batch.isEmpty()) {
+            batch.submitEach(this);
+            return;
+        }
+        queueGrouped(batch, false);
+    }
+
+    /**
+     * Queues a batch as {@link #submitGrouped(JobBatch)} does, but never waits for room, whatever the overflow
+     * policy. For the timer thread publishing producer buffers, so only for pools without rebalancing, resizing or
+     * rate limiting. The jobs a full lane had no room for are left in the batch, in order.
+     *
+     * @return true if every job has been queued
+     * @throws RejectedExecutionException if a lane has been shut down. Groups of other lanes may have been queued
+     *                                    already.
+     */
+    boolean offerGrouped(JobBatch batch) {
+        return batch.isEmpty() || queueGrouped(batch, true);
+    }
+
+    private boolean queueGrouped(JobBatch batch, boolean offer) {
+        int size = batch.size();
+        if (conflator.isActive()) {
+            for (int i = 0; i < size; i++) {
+                conflator.seal(batch.isNumeric(i) ? Long.toString(batch.numericJobId(i)) : batch.jobId(i));
+            }
+        }
+        Grouping grouping = groupings.get();
+        //a job run by the submitter under CALLER_RUNS may submit a batch of its own meanwhile
+        if (grouping.inUse)
+            grouping = new Grouping();
+        grouping.ensureCapacity(size, poolSize);
+        grouping.inUse = true;
+        int[] lanesOfJobs = grouping.lanes;
+        Runnable[] grouped = grouping.jobs;
+        String[] groupedJobIds = grouping.jobIds;
+        long[] groupedNumericJobIds = grouping.numericJobIds;
+        //counting sort by lane: ends[lane + 1] first counts the jobs of the lane, then marks the end of its group
+        int[] ends = grouping.ends;
+        for (int i = 0; i < size; i++) {
+            int lane = batch.isNumeric(i) ? getPool(batch.numericJobId(i)) : getPool(batch.jobId(i));
+            lanesOfJobs[i] = lane;
+            ends[lane + 1]++;
+        }
+        for (int lane = 1; lane <= poolSize; lane++) {
+            ends[lane] += ends[lane - 1];
+        }
+        //filling groups from their end backwards keeps batch order and leaves ends[lane + 1] at the group start
+        for (int i = size - 1; i >= 0; i--) {
+            int index = --ends[lanesOfJobs[i] + 1];
+            grouped[index] = batch.job(i);
+            groupedJobIds[index] = batch.jobId(i);
+            groupedNumericJobIds[index] = batch.numericJobId(i);
+        }
+        boolean complete = true;
         try {
-            for (ConcurrentMap.Entry<Integer, ExecutorService> entry : map.entrySet()) {
-                entry.getValue().shutdown();
-                boolean terminated = false;
-                while (!terminated) {
-                    try {
-                        terminated = entry.getValue().awaitTermination(10000, TimeUnit.MILLISECONDS);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+            for (int lane = 0; lane < poolSize; lane++) {
+                int start = ends[lane + 1];
+                int end = lane + 1 < poolSize ? ends[lane + 2] : size;
+                if (end == start)
+                    continue;
+                if (!offer) {
+                    submitAllToLane(lane, grouped, groupedJobIds, groupedNumericJobIds, start, end - start);
+                    continue;
                 }
-                map.remove(entry.getKey());
+                //ends[lane + 1] is not read again, it now counts the jobs of the lane queued
+                int queued = offerAllToLane(lane, grouped, groupedJobIds, groupedNumericJobIds, start, end - start);
+                ends[lane + 1] = queued;
+                complete &= queued == end - start;
+            }
+            if (!complete) {
+                //the jobs queued on a lane are its first ones in batch order, the others move up in order
+                int kept = 0;
+                for (int i = 0; i < size; i++) {
+                    if (ends[lanesOfJobs[i] + 1] > 0)
+                        ends[lanesOfJobs[i] + 1]--;
+                    else
+                        batch.move(i, kept++);
+                }
+                batch.truncate(kept);
+            } else if (offer) {
+                batch.clear();
             }
         } finally {
-            state.set(false);
-            lock.unlock();
+            Arrays.fill(grouped, 0, size, null);
+            Arrays.fill(groupedJobIds, 0, size, null);
+            grouping.inUse = false;
+        }
+        return complete;
+    }
+
+    /**
+     * Queues jobs on the given lane in order, creating the lane on first use.
+     *
+     * @param bucketNumber  bucket number
+     * @param jobs          array holding the jobs
+     * @param jobIds        array holding the job ids of the jobs, null for numeric ones
+     * @param numericJobIds array holding the numeric job ids of the jobs
+     * @param from          index of the first job
+     * @param count         number of jobs
+     * @throws RejectedExecutionException if the lane has been shut down, or is full and the overflow policy
+     *                                    refuses the jobs
+     */
+    void submitAllToLane(int bucketNumber, Runnable[] jobs, String[] jobIds, long[] numericJobIds, int from,
+                         int count) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        lane.submitAll(jobs, jobIds, numericJobIds, from, count);
+    }
+
+    /**
+     * Queues as many jobs on the given lane as it has room for, in order, creating the lane on first use. Never
+     * waits, whatever the overflow policy.
+     *
+     * @param bucketNumber  bucket number
+     * @param jobs          array holding the jobs
+     * @param jobIds        array holding the job ids of the jobs, null for numeric ones
+     * @param numericJobIds array holding the numeric job ids of the jobs
+     * @param from          index of the first job
+     * @param count         number of jobs
+     * @return number of jobs queued, the first ones
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    int offerAllToLane(int bucketNumber, Runnable[] jobs, String[] jobIds, long[] numericJobIds, int from,
+                       int count) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        return lane.offerAll(jobs, jobIds, numericJobIds, from, count);
+    }
+
+    /**
+     * Queues a job on the given lane, creating the lane on first use.
+     *
+     * @param bucketNumber bucket number
+     * @param jobId        a string containing job id.
+     * @param job          a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down, or is full and the overflow policy
+     *                                    refuses the job
+     */
+    void submitToLane(int bucketNumber, String jobId, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        //a lane that has been shut down rejects the job itself
+        lane.submit(jobId, job);
+    }
+
+    /**
+     * Queues a job of a numeric job id on the given lane, creating the lane on first use.
+     *
+     * @param bucketNumber bucket number
+     * @param jobId        a numeric job id.
+     * @param job          a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down, or is full and the overflow policy
+     *                                    refuses the job
+     */
+    void submitToLane(int bucketNumber, long jobId, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        lane.submit(jobId, job);
+    }
+
+    /**
+     * Queues a job of the pool itself on the given lane, creating the lane on first use. Waits for room if the lane
+     * is full, whatever the overflow policy.
+     *
+     * @param bucketNumber bucket number
+     * @param job          a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    void putOnLane(int bucketNumber, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        lane.put(job);
+    }
+
+    /**
+     * Queues a job of the pool itself on the given lane if it has room, creating the lane on first use. Never waits.
+     *
+     * @param bucketNumber bucket number
+     * @param job          a Runnable representing the job to be executed.
+     * @return false if the lane is full
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    boolean offerOnLane(int bucketNumber, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        return lane.offer(job);
+    }
+
+    /**
+     * Queues a job the pool has already accepted on the given lane if it has room, creating the lane on first use.
+     * Never waits, whatever the overflow policy.
+     *
+     * @param bucketNumber bucket number
+     * @param jobId        a string containing job id.
+     * @param job          a Runnable representing the job to be executed.
+     * @return false if the lane is full
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    boolean offerOnLane(int bucketNumber, String jobId, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        return lane.offer(jobId, job);
+    }
+
+    /**
+     * Queues a job the pool has already accepted on the given lane, creating the lane on first use. Waits for room if
+     * the lane is full, whatever the overflow policy.
+     *
+     * @param bucketNumber bucket number
+     * @param jobId        a string containing job id, null for a numeric job id
+     * @param numericJobId the numeric job id, when jobId is null
+     * @param job          a Runnable representing the job to be executed.
+     * @throws RejectedExecutionException if the lane has been shut down
+     */
+    void putOnLane(int bucketNumber, String jobId, long numericJobId, Runnable job) {
+        Lane lane = lane(bucketNumber);
+        if (lane == Lane.TERMINATED)
+            throw new RejectedExecutionException("Thread pool is terminated");
+        lane.put(jobId, numericJobId, job);
+    }
+
+    /**
+     * Blocks until the given lane has terminated, returns at once if it was never started.
+     *
+     * @param bucketNumber bucket number
+     */
+    void awaitLane(int bucketNumber) {
+        Lane lane = lanes.get(bucketNumber);
+        if (lane != null && lane != Lane.TERMINATED)
+            lane.awaitTermination();
+    }
+
+    /**
+     * @param jobId job id
+     * @return lane currently running the jobs of the given job id
+     */
+    int laneOf(String jobId) {
+        if (resizer != null)
+            return resizer.laneOf(jobId);
+        return rebalancer != null ? rebalancer.laneOf(jobId) : getPool(jobId);
+    }
+
+    /**
+     * Runs a rebalancing round now.
+     *
+     * @return number of job ids moved
+     */
+    int rebalanceNow() {
+        return rebalancer.rebalance();
+    }
+
+    /**
+     * Shuts down all lanes. And awaits their termination. Scheduled jobs not yet due are discarded, jobs delayed
+     * by the rate limiter or held in producer buffers are queued first.
+     * Replaces references of those lanes with the terminal marker, so no lane can be created afterwards.
+     * Every lane is told to stop before any is waited for, so lanes drain their jobs in parallel.
+     * Concurrent callers all return only once every lane has terminated.
+     */
+    public void shutdown() {
+        running = false;
+        unregisterMBean();
+        //buffered jobs have been accepted, they are published while lanes are still open
+        if (buffers != null)
+            buffers.flushAll();
+        timers.shutdown();
+        //jobs delayed by the rate limiter have been accepted, they are queued while lanes are still open
+        List<String> jobIds = new ArrayList<>();
+        List<Runnable> delayed = new ArrayList<>();
+        timers.drainAccepted(jobIds, delayed);
+        for (Runnable queue : delayed) {
+            try {
+                queue.run();
+            } catch (RejectedExecutionException e) {
+                //refused by a lane shut down meanwhile, which counts it
+            }
         }
+        //no job id starts moving once lanes begin to close
+        if (rebalancer != null)
+            rebalancer.shutdown();
+        if (resizer != null)
+            resizer.awaitResize();
+        for (int i = 0; i < lanes.length(); i++) {
+            Lane lane = closeSlot(i);
+            if (lane != null)
+                lane.shutdown();
+        }
+        closed.countDown();
+        boolean interrupted = false;
+        for (; ; ) {
+            try {
+                if (awaitTermination(10000, TimeUnit.MILLISECONDS))
+                    break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (journal != null)
+            journal.close();
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
 
+    /**
+     * Shuts down all lanes without running the jobs they have not started. Lane threads are interrupted, finish the
+     * job they are running and give up the others, which are counted as dropped in the metrics. Jobs of job ids
+     * being moved by rebalancing, delayed by the rate limiter or held in producer buffers, are given up as well.
+     * Scheduled jobs not yet due
+     * are discarded. Returns once every lane has terminated, like {@link #shutdown()}. Durable jobs that never
+     * started stay pending in the journal, unless they are run from the returned map.
+     * <p>
+     * Concurrent submitters may still have their jobs run, or rejected, while this method is in progress. A resize
+     * in progress is completed first.
+     *
+     * @return jobs that never started, by job id in the order they were queued. Numeric job ids appear as their
+     * decimal string.
+     */
+    public Map<String, List<Runnable>> shutdownNow() {
+        running = false;
+        unregisterMBean();
+        timers.shutdown();
+        List<String> delayedJobIds = new ArrayList<>();
+        List<Runnable> delayed = new ArrayList<>();
+        if (buffers != null)
+            buffers.takeAll(delayedJobIds, delayed);
+        timers.drainAccepted(delayedJobIds, delayed);
+        if (rebalancer != null)
+            rebalancer.stop();
+        if (resizer != null)
+            resizer.awaitResize();
+        Lane[] stopped = new Lane[lanes.length()];
+        for (int i = 0; i < stopped.length; i++) {
+            stopped[i] = closeSlot(i);
+            if (stopped[i] != null)
+                stopped[i].shutdownNow();
+        }
+        closed.countDown();
+        Map<String, List<Runnable>> unrun = new LinkedHashMap<>();
+        List<Runnable> jobs = new ArrayList<>();
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < stopped.length; i++) {
+            Lane lane = stopped[i];
+            if (lane == null)
+                continue;
+            lane.awaitTermination();
+            lanes.compareAndSet(i, lane, Lane.TERMINATED);
+            lane.takeAbandoned(jobs, keys);
+            for (int j = 0; j < jobs.size(); j++) {
+                Object key = keys.get(j);
+                if (key == Lane.POOL_JOB) {
+                    if (jobs.get(j) instanceof MultiKeyJob.Part)
+                        ((MultiKeyJob.Part) jobs.get(j)).owner().abandon(unrun);
+                    else if (rebalancer != null)
+                        rebalancer.abandon(jobs.get(j), unrun);
+                } else
+                    unrun.computeIfAbsent((String) key, jobId -> new ArrayList<>()).add(jobs.get(j));
+            }
+            jobs.clear();
+            keys.clear();
+        }
+        //delayed and buffered jobs were accepted after every job of their job id queued on a lane
+        for (int i = 0; i < delayed.size(); i++) {
+            unrun.computeIfAbsent(delayedJobIds.get(i), jobId -> new ArrayList<>())
+                    .add(RateLimiter.unwrap(delayed.get(i)));
+        }
+        //durable jobs returned here are still pending in the journal, and are run again by the next pool
+        if (journal != null)
+            journal.close();
+        return unrun;
+    }
+
+    /**
+     * Waits for every lane to terminate after {@link #shutdown()} or {@link #shutdownNow()}, for no longer than the
+     * given time. Lanes are waited for against a single deadline, so the wait is bounded by the slowest lane.
+     *
+     * @param timeout longest time to wait
+     * @param unit    unit of the timeout
+     * @return true if the pool has terminated, false if the timeout expired first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!closed.await(timeout, unit))
+            return false;
+        for (int i = 0; i < lanes.length(); i++) {
+            Lane lane = lanes.get(i);
+            if (lane == Lane.TERMINATED)
+                continue;
+            if (!lane.awaitTermination(deadline - System.nanoTime()))
+                return false;
+            lanes.compareAndSet(i, lane, Lane.TERMINATED);
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@link #shutdown()} or {@link #shutdownNow()} has been called
+     */
+    public boolean isShutdown() {
+        return !running;
+    }
+
+    /**
+     * @return whether the pool has been shut down and every lane has terminated
+     */
+    public boolean isTerminated() {
+        if (closed.getCount() != 0)
+            return false;
+        for (int i = 0; i < lanes.length(); i++) {
+            Lane lane = lanes.get(i);
+            if (lane != Lane.TERMINATED && !lane.isTerminated())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether queue wait and run time histograms are recorded
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every lane. Lanes that have not been started report zero counts.
+     * Counts of different lanes are not read atomically with respect to each other.
+     *
+     * @return one entry per lane, indexed by lane number
+     */
+    public List<LaneMetrics> metrics() {
+        int size = poolSize;
+        List<LaneMetrics> metrics = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LaneStats laneStats = stats[i];
+            //read completed before the lane's counters, so a snapshot never shows more completed than submitted
+            long completed = laneStats.completed();
+            Lane lane = lanes.get(i);
+            boolean live = lane != null && lane != Lane.TERMINATED;
+            long dropped = laneStats.dropped();
+            long submitted = live ? lane.submitted() : completed + dropped;
+            int queueDepth = live ? lane.queueSize() : 0;
+            metrics.add(new LaneMetrics(i, submitted, completed, laneStats.rejected(), dropped, queueDepth,
+                    laneStats.queueWait(), laneStats.runTime()));
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    /**
+     * Takes a snapshot of the flight recorder of a lane: the latest jobs it started, with the hash of their job id
+     * and their submission, start and end times, including the job running at the time. A lane that stalls shows
+     * its stuck job as running. Records of a lane retired by a resize stay until the lane is used again.
+     *
+     * @param lane index of the lane, below the maximum pool size
+     * @return the recorded jobs, oldest first, empty if the flight recorder is disabled
+     * @throws IllegalArgumentException if there is no such lane
+     */
+    public List<FlightRecord> flightRecords(int lane) {
+        if (lane < 0 || lane >= lanes.length())
+            throw new IllegalArgumentException("No lane " + lane + " in a pool of " + lanes.length());
+        FlightRecorder recorder = recorders[lane];
+        if (recorder == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(recorder.snapshot(lane));
+    }
+
+    /**
+     * Formats the flight recorders of the lanes of the pool, one record per line, for logs and for the
+     * {@link ThreadPoolWithJobAffinityMXBean#dumpFlightRecorder()} operation. Jobs still running come last in their
+     * lane.
+     *
+     * @return the records of every lane, oldest first within a lane
+     */
+    public String dumpFlightRecorder() {
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < poolSize; i++) {
+            for (FlightRecord record : flightRecords(i)) {
+                dump.append(record).append(System.lineSeparator());
+            }
+        }
+        return dump.toString();
+    }
+
+    /**
+     * Registers the metrics of this pool with the platform MBean server, under
+     * {@code com.coderevisited:type=ThreadPoolWithJobAffinity,name=<pool name>}. The MBean is unregistered on
+     * shutdown. Calling this method again returns the name already registered.
+     *
+     * @return name of the registered MBean
+     * @throws IllegalStateException if the MBean can not be registered
+     */
+    public ObjectName registerMBean() {
+        ObjectName registered = mbeanName.get();
+        if (registered != null)
+            return registered;
+        try {
+            ObjectName objectName = new ObjectName("com.coderevisited:type=ThreadPoolWithJobAffinity,name=" + name);
+            if (mbeanName.compareAndSet(null, objectName)) {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(new ThreadPoolWithJobAffinityMBean(this), objectName);
+            }
+            return mbeanName.get();
+        } catch (JMException e) {
+            mbeanName.set(null);
+            throw new IllegalStateException("Unable to register MBean of " + name, e);
+        }
+    }
+
+    private void unregisterMBean() {
+        ObjectName objectName = mbeanName.getAndSet(null);
+        if (objectName == null)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            //already unregistered by someone else, nothing left to clean up
+        }
+    }
+
+    /**
+     * Returns the number of lanes that have been started and not yet terminated.
+     *
+     * @return number of live lanes
+     */
+    int activeLanes() {
+        int count = 0;
+        for (int i = 0; i < lanes.length(); i++) {
+            Lane lane = lanes.get(i);
+            if (lane != null && lane != Lane.TERMINATED)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the lane of the given bucket, creating it on first use.
+     *
+     * @param bucketNumber bucket number
+     * @return lane of the bucket, or the terminal marker if the pool is terminated
+     */
+    private Lane lane(int bucketNumber) {
+        Lane lane = lanes.get(bucketNumber);
+        if (lane != null)
+            return lane;
+        Lane created = Lane.newLane(name + "-lane-" + bucketNumber, laneCapacity, stats[bucketNumber],
+                recorders[bucketNumber], slowJobNanos, overflowPolicy, blockTimeoutNanos,
+                waitStrategies[bucketNumber]);
+        if (lanes.compareAndSet(bucketNumber, null, created)) {
+            created.start();
+            return created;
+        }
+        //lost the race to another submitter or to shutdown, the thread of the created lane was never started
+        return lanes.get(bucketNumber);
+    }
+
+    /**
+     * Marks an empty slot as terminated, so no lane is created for it from now on.
+     *
+     * @param bucketNumber bucket number
+     * @return the lane already in the slot, or null if there was none
+     */
+    private Lane closeSlot(int bucketNumber) {
+        for (; ; ) {
+            Lane lane = lanes.get(bucketNumber);
+            if (lane != null)
+                return lane == Lane.TERMINATED ? null : lane;
+            if (lanes.compareAndSet(bucketNumber, null, Lane.TERMINATED))
+                return null;
+        }
     }
 
     /**
@@ -108,9 +1338,458 @@ public class ThreadPoolWithJobAffinityExecutor implements ThreadPoolWithJobAffin
      *
      * @param jobId JobId
      * @return bucketKey
+     * @throws IllegalStateException if the router returns a lane outside of the pool
+     */
+    int getPool(String jobId) {
+        return getPool(jobId, poolSize);
+    }
+
+    /**
+     * Returns bucket key for a given JobId among the given number of lanes
+     *
+     * @param jobId JobId
+     * @param size  number of lanes
+     * @return bucketKey
+     * @throws IllegalStateException if the router returns a lane outside of the pool
+     */
+    int getPool(String jobId, int size) {
+        int bucketNumber = router.lane(jobId, size);
+        if (bucketNumber < 0 || bucketNumber >= size)
+            throw new IllegalStateException(router + " routed " + jobId + " to lane " + bucketNumber);
+        return bucketNumber;
+    }
+
+    /**
+     * Returns bucket key for a given numeric JobId
+     *
+     * @param jobId JobId
+     * @return bucketKey
+     * @throws IllegalStateException if the router returns a lane outside of the pool
+     */
+    int getPool(long jobId) {
+        return getPool(jobId, poolSize);
+    }
+
+    /**
+     * Returns bucket key for a given numeric JobId among the given number of lanes
+     *
+     * @param jobId JobId
+     * @param size  number of lanes
+     * @return bucketKey
+     * @throws IllegalStateException if the router returns a lane outside of the pool
      */
-    private int getPool(String jobId) {
-        int h = jobId.hashCode();
-        return Math.abs(h) % poolSize;
+    int getPool(long jobId, int size) {
+        int bucketNumber = router.lane(jobId, size);
+        if (bucketNumber < 0 || bucketNumber >= size)
+            throw new IllegalStateException(router + " routed " + jobId + " to lane " + bucketNumber);
+        return bucketNumber;
+    }
+
+    /**
+     * Scratch space grouping a batch by lane, kept by a submitting thread across submissions so that batches of a
+     * stable size allocate nothing.
+     */
+    private static final class Grouping {
+
+        int[] lanes = new int[0];
+        Runnable[] jobs = new Runnable[0];
+        String[] jobIds = new String[0];
+        long[] numericJobIds = new long[0];
+        int[] ends = new int[0];
+        boolean inUse;
+
+        /**
+         * Makes room for a batch of the given size, and clears the group ends for the given number of lanes.
+         */
+        void ensureCapacity(int size, int laneCount) {
+            if (ends.length != laneCount + 1)
+                ends = new int[laneCount + 1];
+            else
+                Arrays.fill(ends, 0);
+            if (lanes.length >= size)
+                return;
+            int capacity = Math.max(size, 16);
+            lanes = new int[capacity];
+            jobs = new Runnable[capacity];
+            jobIds = new String[capacity];
+            numericJobIds = new long[capacity];
+        }
+    }
+
+    /**
+     * Collects the settings of a pool. All settings but the pool size are optional.
+     */
+    public static final class Builder {
+
+        private final int poolSize;
+        private int laneCapacity = Lane.DEFAULT_CAPACITY;
+        private boolean metricsEnabled = true;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        private long blockTimeoutNanos = Lane.NO_TIMEOUT;
+        private WaitStrategy waitStrategy = WaitStrategy.blocking();
+        private final Map<Integer, WaitStrategy> laneWaitStrategies = new HashMap<>();
+        private LaneRouter router = LaneRouters.modulo();
+        private long rebalanceInterval;
+        private double rebalanceThreshold = 1.25;
+        private boolean prestartLanes;
+        private long timerTickNanos = TimeUnit.MILLISECONDS.toNanos(1);
+        private double jobsPerSecond;
+        private int rateLimitBurst;
+        private RateLimitPolicy rateLimitPolicy;
+        private Path journalDirectory;
+        private int journalSegmentSize = Journal.DEFAULT_SEGMENT_SIZE;
+        private final Map<Integer, DurableJobHandler> durableHandlers = new HashMap<>();
+        private boolean producerBuffering;
+        private int producerBatchSize;
+        private long producerMaxDelayNanos;
+        private int maxPoolSize;
+        private int warmUpJobs;
+        private int flightRecorderSize = 1024;
+        private long slowJobNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        private Runnable warmUpJob = () -> {
+        };
+
+        private Builder(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        /**
+         * @return a copy of this builder for the scratch pool of the warm-up: same lanes, routing and producer
+         * buffering, without the options calling back into user code or reporting jobs, that is no rate limit, no
+         * durable job handler and no slow job event
+         */
+        private Builder forWarmUp() {
+            Builder copy = new Builder(poolSize);
+            copy.laneCapacity = laneCapacity;
+            copy.metricsEnabled = metricsEnabled;
+            copy.overflowPolicy = overflowPolicy;
+            copy.blockTimeoutNanos = blockTimeoutNanos;
+            copy.waitStrategy = waitStrategy;
+            copy.laneWaitStrategies.putAll(laneWaitStrategies);
+            copy.router = router;
+            copy.rebalanceInterval = rebalanceInterval;
+            copy.rebalanceThreshold = rebalanceThreshold;
+            copy.timerTickNanos = timerTickNanos;
+            copy.producerBuffering = producerBuffering;
+            copy.producerBatchSize = producerBatchSize;
+            copy.producerMaxDelayNanos = producerMaxDelayNanos;
+            copy.maxPoolSize = maxPoolSize;
+            copy.flightRecorderSize = flightRecorderSize;
+            copy.slowJobNanos = 0L;
+            copy.warmUpJob = warmUpJob;
+            return copy;
+        }
+
+        /**
+         * @param laneCapacity maximum number of jobs waiting in a lane, rounded up to a power of two.
+         *                     What a submitter finding its lane full does is set by
+         *                     {@link #overflowPolicy(OverflowPolicy)}. Defaults to 16384.
+         * @return this builder
+         */
+        public Builder laneCapacity(int laneCapacity) {
+            this.laneCapacity = laneCapacity;
+            return this;
+        }
+
+        /**
+         * @param metricsEnabled whether queue wait and run time histograms are recorded. Job counts are always kept.
+         *                       Defaults to true.
+         * @return this builder
+         */
+        public Builder metricsEnabled(boolean metricsEnabled) {
+            this.metricsEnabled = metricsEnabled;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what a submitter does when its lane is full. Defaults to {@link OverflowPolicy#BLOCK}.
+         * @return this builder
+         */
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Bounds the time a submitter waits for room in a full lane, after which its job is rejected with a
+         * {@link RejectedExecutionException}. Jobs the pool queues for itself while moving job ids always wait.
+         *
+         * @param timeout longest wait, defaults to waiting as long as it takes
+         * @param unit    unit of the timeout
+         * @return this builder
+         */
+        public Builder blockTimeout(long timeout, TimeUnit unit) {
+            this.blockTimeoutNanos = timeout < 0 ? -1 : unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Limits the rate of jobs of every job id with a token bucket, so that a job id flooding the pool does not
+         * starve the job ids sharing its lane. Applies to jobs submitted with a job id, including scheduled jobs once
+         * due, but not to conflated jobs, which are bounded already. Each submission reads the clock and updates its
+         * bucket with a compare-and-set, and batches are submitted job by job.
+         *
+         * @param jobsPerSecond sustained rate of jobs per job id
+         * @param burst         number of jobs a job id may submit at once after being idle, at least 1
+         * @param policy        what to do with a job exceeding the limit
+         * @return this builder
+         */
+        public Builder rateLimit(double jobsPerSecond, int burst, RateLimitPolicy policy) {
+            if (policy == null)
+                throw new NullPointerException();
+            this.jobsPerSecond = jobsPerSecond;
+            this.rateLimitBurst = burst;
+            this.rateLimitPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Enables durable jobs, see {@link ThreadPoolWithJobAffinityExecutor#submitDurable(String, int, byte[])},
+         * journaled in segment files of 64 MB. Durable jobs left pending in the directory by a previous pool are
+         * queued by {@link #build()}, before any other job. Only one pool at a time may use a directory.
+         *
+         * @param directory directory of the journal, created if needed
+         * @return this builder
+         */
+        public Builder journal(Path directory) {
+            return journal(directory, Journal.DEFAULT_SEGMENT_SIZE);
+        }
+
+        /**
+         * Enables durable jobs, see {@link #journal(Path)}.
+         *
+         * @param directory   directory of the journal, created if needed
+         * @param segmentSize size of a segment file in bytes, bounding the size of a record. Segments are mapped
+         *                    in memory whole.
+         * @return this builder
+         */
+        public Builder journal(Path directory, int segmentSize) {
+            if (directory == null)
+                throw new NullPointerException();
+            this.journalDirectory = directory;
+            this.journalSegmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Registers the handler of the durable jobs submitted, or replayed, with the given handler id.
+         *
+         * @param handlerId id recorded in the journal
+         * @param handler   handler of the jobs
+         * @return this builder
+         */
+        public Builder durableHandler(int handlerId, DurableJobHandler handler) {
+            if (handler == null)
+                throw new NullPointerException();
+            durableHandlers.put(handlerId, handler);
+            return this;
+        }
+
+        /**
+         * Enables producer buffering: jobs submitted one at a time are added to a buffer of the submitting thread
+         * instead of their lane, and the buffer is published to the lanes as a batch, see
+         * {@link ThreadPoolWithJobAffinityExecutor#submitAll(JobBatch)}, once it holds the batch size jobs, once its
+         * oldest job has waited for the longest delay, or when the thread calls
+         * {@link ThreadPoolWithJobAffinityExecutor#flush()}. Jobs of a job id submitted by a thread still run in the
+         * order it submitted them, but may run after jobs of the job id submitted later by other threads.
+         * <p>
+         * Adding a job takes a monitor only the submitting thread uses until the delay elapses, so the submit path
+         * shares no cache line with other cores, and a full lane refuses a whole batch at once: the exception is
+         * thrown to the thread publishing it, or dropped if the timer thread published it. Conflated, durable and
+         * batch submissions publish the buffer of the calling thread first. Not available together with
+         * rebalancing, resizing or rate limiting.
+         *
+         * @param batchSize number of buffered jobs publishing the buffer, at least 1
+         * @param maxDelay  longest time a job waits in a buffer, rounded up to the next timer tick
+         * @param unit      unit of the delay
+         * @return this builder
+         */
+        public Builder producerBuffering(int batchSize, long maxDelay, TimeUnit unit) {
+            this.producerBuffering = true;
+            this.producerBatchSize = batchSize;
+            this.producerMaxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * Sets the number of jobs kept by the flight recorder of each lane, see
+         * {@link ThreadPoolWithJobAffinityExecutor#flightRecords(int)}. An entry takes 32 bytes. Recording a job
+         * costs a few stores into the ring of the lane, with the timestamps the metrics take anyway; with metrics
+         * disabled the flight recorder makes lanes read the clock per job again.
+         *
+         * @param entries number of jobs kept per lane, rounded up to a power of two, 0 to disable the flight
+         *                recorder. Defaults to 1024.
+         * @return this builder
+         */
+        public Builder flightRecorder(int entries) {
+            this.flightRecorderSize = entries;
+            return this;
+        }
+
+        /**
+         * Sets the run time from which a job is reported as a {@code com.coderevisited.SlowJob} Flight Recorder
+         * event, holding its job id, lane, queue wait and run time. Events are only created for slow jobs, and only
+         * committed while a recording has them enabled. Requires jobs to be timed, by the metrics or the flight
+         * recorder.
+         *
+         * @param threshold shortest run time reported, 0 to report none. Defaults to 10 milliseconds.
+         * @param unit      unit of the threshold
+         * @return this builder
+         */
+        public Builder slowJobThreshold(long threshold, TimeUnit unit) {
+            this.slowJobNanos = unit.toNanos(threshold);
+            return this;
+        }
+
+        /**
+         * Sets the resolution of scheduled jobs. Shorter ticks fire jobs closer to their deadline, at the cost of
+         * waking the timer thread more often while jobs are pending.
+         *
+         * @param tick length of a tick of the timing wheel, defaults to one millisecond
+         * @param unit unit of the tick
+         * @return this builder
+         */
+        public Builder timerTick(long tick, TimeUnit unit) {
+            this.timerTickNanos = unit.toNanos(tick);
+            return this;
+        }
+
+        /**
+         * @param waitStrategy how idle lane threads wait for jobs, unless set for their lane. Defaults to
+         *                     {@link WaitStrategy#blocking()}.
+         * @return this builder
+         */
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        /**
+         * Sets how the thread of one lane waits for jobs, for instance to spin on the lane that latency sensitive
+         * job ids are pinned to with {@link LaneRouters#withOverrides(Map, LaneRouter)}.
+         *
+         * @param lane         lane index in [0, pool size)
+         * @param waitStrategy how the lane thread waits for jobs
+         * @return this builder
+         */
+        public Builder waitStrategy(int lane, WaitStrategy waitStrategy) {
+            this.laneWaitStrategies.put(lane, waitStrategy);
+            return this;
+        }
+
+        /**
+         * @param router strategy mapping job ids to lanes. Defaults to {@link LaneRouters#modulo()}.
+         * @return this builder
+         */
+        public Builder router(LaneRouter router) {
+            this.router = router;
+            return this;
+        }
+
+        /**
+         * Enables moving hot job ids to lightly loaded lanes. Every interval, the load of each lane over the past
+         * interval is computed from the jobs submitted per job id, and job ids are moved off the hottest lane while
+         * it carries more than the rebalancing threshold times the average load. A job id only starts running on
+         * its new lane once all its jobs on the old lane have completed, so jobs of a job id still run one at a
+         * time and in submission order.
+         * <p>
+         * Tracking load costs a map lookup and an uncontended monitor per submission.
+         *
+         * @param interval time between two rebalancing rounds, 0 to disable rebalancing, the default
+         * @param unit     unit of the interval
+         * @return this builder
+         */
+        public Builder rebalancing(long interval, TimeUnit unit) {
+            this.rebalanceInterval = unit.toNanos(interval);
+            return this;
+        }
+
+        /**
+         * @param rebalanceThreshold ratio of the hottest lane load to the average lane load above which job ids are
+         *                           moved, at least 1. Defaults to 1.25.
+         * @return this builder
+         */
+        public Builder rebalanceThreshold(double rebalanceThreshold) {
+            this.rebalanceThreshold = rebalanceThreshold;
+            return this;
+        }
+
+        /**
+         * Enables {@link ThreadPoolWithJobAffinityExecutor#resize(int)}. Resizable pools count submitters in and out
+         * of their lane, two atomic updates per submission, and submit batches job by job. Not available together
+         * with rebalancing, nor with {@link OverflowPolicy#DROP_OLDEST}, which could drop the fence of a resize.
+         *
+         * @param maxPoolSize largest number of lanes, at least the pool size. Lane settings, such as per lane wait
+         *                    strategies, apply to lanes up to this number.
+         * @return this builder
+         */
+        public Builder maxPoolSize(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        /**
+         * @param prestartLanes whether the thread of every lane is started by {@link #build()}, rather than on the
+         *                      first job routed to the lane. Defaults to false.
+         * @return this builder
+         */
+        public Builder prestartLanes(boolean prestartLanes) {
+            this.prestartLanes = prestartLanes;
+            return this;
+        }
+
+        /**
+         * Makes {@link #build()} submit the given number of no-op jobs before returning the pool, see
+         * {@link #warmUp(int, Runnable)}.
+         *
+         * @param jobs number of warm-up jobs, 0 for no warm-up, the default
+         * @return this builder
+         */
+        public Builder warmUp(int jobs) {
+            this.warmUpJobs = jobs;
+            return this;
+        }
+
+        /**
+         * Makes {@link #build()} run a warm-up workload before returning the pool, so that the submit and dispatch
+         * code, and the given job, are compiled before the first real job. The jobs run on a scratch pool with the
+         * same settings, shut down before the pool is returned, so they do not show in the metrics of the pool.
+         * A few tens of thousands of jobs get the hot paths compiled.
+         *
+         * @param jobs number of warm-up jobs, 0 for no warm-up, the default
+         * @param job  job run by every warm-up job, for instance handling a sample message. Runs on the lane threads
+         *             of the scratch pool, so it must be safe to run concurrently with itself.
+         * @return this builder
+         */
+        public Builder warmUp(int jobs, Runnable job) {
+            this.warmUpJobs = jobs;
+            this.warmUpJob = job;
+            return this;
+        }
+
+        /**
+         * Builds the pool, running the warm-up workload and starting the lane threads first if asked to, and
+         * queueing the durable jobs left pending in the journal.
+         *
+         * @return a pool ready for its first job
+         * @throws java.io.UncheckedIOException if the journal can not be opened
+         * @throws IllegalStateException        if a pending durable job has no registered handler
+         */
+        public ThreadPoolWithJobAffinityExecutor build() {
+            ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(this);
+            if (warmUpJobs > 0)
+                pool.warmUp(this);
+            if (journalDirectory != null) {
+                try {
+                    pool.openJournal(this);
+                } catch (RuntimeException e) {
+                    pool.shutdownNow();
+                    throw e;
+                }
+            }
+            if (prestartLanes)
+                pool.prestartLanes();
+            return pool;
+        }
     }
 }
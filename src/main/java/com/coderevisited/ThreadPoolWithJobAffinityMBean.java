@@ -0,0 +1,135 @@
+package com.coderevisited;
+
+import java.util.List;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Adapts the metrics snapshots of a pool to its JMX interface. Every attribute read takes a fresh snapshot.
+ */
+final class ThreadPoolWithJobAffinityMBean implements ThreadPoolWithJobAffinityMXBean {
+
+    private static final int QUEUE_WAIT = 0;
+    private static final int RUN_TIME = 1;
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+
+    ThreadPoolWithJobAffinityMBean(ThreadPoolWithJobAffinityExecutor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int getPoolSize() {
+        return pool.poolSize();
+    }
+
+    @Override
+    public int getActiveLanes() {
+        return pool.activeLanes();
+    }
+
+    @Override
+    public boolean isMetricsEnabled() {
+        return pool.isMetricsEnabled();
+    }
+
+    @Override
+    public long[] getSubmittedJobs() {
+        List<LaneMetrics> metrics = pool.metrics();
+        long[] values = new long[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics.get(i).submitted();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getCompletedJobs() {
+        List<LaneMetrics> metrics = pool.metrics();
+        long[] values = new long[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics.get(i).completed();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getRejectedJobs() {
+        List<LaneMetrics> metrics = pool.metrics();
+        long[] values = new long[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics.get(i).rejected();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getDroppedJobs() {
+        List<LaneMetrics> metrics = pool.metrics();
+        long[] values = new long[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics.get(i).dropped();
+        }
+        return values;
+    }
+
+    @Override
+    public int[] getQueueDepths() {
+        List<LaneMetrics> metrics = pool.metrics();
+        int[] values = new int[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics.get(i).queueDepth();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getQueueWaitMedianNanos() {
+        return percentiles(QUEUE_WAIT, 50);
+    }
+
+    @Override
+    public long[] getQueueWait99thPercentileNanos() {
+        return percentiles(QUEUE_WAIT, 99);
+    }
+
+    @Override
+    public long[] getQueueWaitMaxNanos() {
+        return percentiles(QUEUE_WAIT, 100);
+    }
+
+    @Override
+    public long[] getRunTimeMedianNanos() {
+        return percentiles(RUN_TIME, 50);
+    }
+
+    @Override
+    public long[] getRunTime99thPercentileNanos() {
+        return percentiles(RUN_TIME, 99);
+    }
+
+    @Override
+    public long[] getRunTimeMaxNanos() {
+        return percentiles(RUN_TIME, 100);
+    }
+
+    @Override
+    public String dumpFlightRecorder() {
+        return pool.dumpFlightRecorder();
+    }
+
+    private long[] percentiles(int histogram, double percentile) {
+        List<LaneMetrics> metrics = pool.metrics();
+        long[] values = new long[metrics.size()];
+        for (int i = 0; i < values.length; i++) {
+            LaneMetrics lane = metrics.get(i);
+            LatencyHistogram h = histogram == QUEUE_WAIT ? lane.queueWait() : lane.runTime();
+            values[i] = h == null ? 0 : h.valueAtPercentile(percentile);
+        }
+        return values;
+    }
+}
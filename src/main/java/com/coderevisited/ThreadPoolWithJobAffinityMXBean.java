@@ -0,0 +1,49 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * JMX view of the per lane metrics of a {@link ThreadPoolWithJobAffinityExecutor}, registered with
+ * {@link ThreadPoolWithJobAffinityExecutor#registerMBean()}.
+ * Every array attribute holds one entry per lane, indexed by lane number. Durations are in nanoseconds and are
+ * all zero when metrics are disabled.
+ */
+public interface ThreadPoolWithJobAffinityMXBean {
+
+    int getPoolSize();
+
+    int getActiveLanes();
+
+    boolean isMetricsEnabled();
+
+    long[] getSubmittedJobs();
+
+    long[] getCompletedJobs();
+
+    long[] getRejectedJobs();
+
+    long[] getDroppedJobs();
+
+    int[] getQueueDepths();
+
+    long[] getQueueWaitMedianNanos();
+
+    long[] getQueueWait99thPercentileNanos();
+
+    long[] getQueueWaitMaxNanos();
+
+    long[] getRunTimeMedianNanos();
+
+    long[] getRunTime99thPercentileNanos();
+
+    long[] getRunTimeMaxNanos();
+
+    /**
+     * @return the latest jobs of every lane, see {@link ThreadPoolWithJobAffinityExecutor#dumpFlightRecorder()}
+     */
+    String dumpFlightRecorder();
+}
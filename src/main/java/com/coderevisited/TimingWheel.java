@@ -0,0 +1,466 @@
+package com.coderevisited;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * Hashed timing wheel firing delayed and periodic jobs into the lanes of a pool.
+ * <p>
+ * Time is cut into ticks, and the wheel has one bucket per tick over {@link #WHEEL_SIZE} ticks. A timer sits in
+ * the bucket of its deadline tick, with the number of whole turns of the wheel left before it is due, so adding,
+ * cancelling and firing a timer cost the same whatever the number of pending timers, and a pending timer costs one
+ * small object.
+ * <p>
+ * Scheduling threads push timers on a lock-free stack. A single timer thread, started by the first timer, moves
+ * them into their bucket at every tick, then fires the due timers of the bucket of the tick by submitting them
+ * to the pool under their job id, in the order they were scheduled. The timer thread parks while no timer is
+ * pending.
+ * <p>
+ * The timer thread never waits for room in a lane: a due job whose lane is full is set aside and tried again at
+ * every tick, before the timers of the tick, and later due jobs of its job id are set aside behind it, so the order
+ * of a job id is kept while the timer thread goes on with the other lanes.
+ */
+final class TimingWheel implements Runnable {
+
+    /**
+     * Number of buckets, a power of two.
+     */
+    static final int WHEEL_SIZE = 512;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Longest delay, keeping deadlines far from overflowing.
+     */
+    private static final long MAX_DELAY = Long.MAX_VALUE >> 2;
+
+    private final ThreadPoolWithJobAffinityExecutor pool;
+    private final long tickNanos;
+    private final long origin = System.nanoTime();
+    private final Thread thread;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicReference<Timer> incoming = new AtomicReference<>();
+    private volatile boolean idle;
+    private volatile boolean stopped;
+
+    //buckets and periodic timers due again, owned by the timer thread
+    private final Timer[] heads = new Timer[WHEEL_SIZE];
+    private final Timer[] tails = new Timer[WHEEL_SIZE];
+    private Timer rescheduledHead;
+    private Timer rescheduledTail;
+    //due timers whose lane was full, and job ids of those still set aside in the current tick
+    private final ArrayDeque<Timer> stalled = new ArrayDeque<>();
+    private final Set<String> blocked = new HashSet<>();
+
+    /**
+     * @param pool      pool running the jobs
+     * @param tickNanos length of a tick, in nanoseconds
+     * @param name      name of the timer thread
+     */
+    TimingWheel(ThreadPoolWithJobAffinityExecutor pool, long tickNanos, String name) {
+        this.pool = pool;
+        this.tickNanos = tickNanos;
+        this.thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @param jobId       a string containing job id.
+     * @param job         a Runnable representing the job to be executed.
+     * @param delayNanos  delay before the first run, in nanoseconds
+     * @param periodNanos period between two runs, in nanoseconds, 0 for a single run
+     * @return the scheduled timer
+     */
+    ScheduledJob schedule(String jobId, Runnable job, long delayNanos, long periodNanos) {
+        return push(new Timer(jobId, job, Math.min(periodNanos, MAX_DELAY), false), delayNanos);
+    }
+
+    /**
+     * Delays a job the pool has already accepted, such as one held back by the rate limiter. Once due, the timer
+     * thread queues the job with {@link Accepted#offer()}, and tries again at every tick while its lane is full,
+     * whatever the overflow policy. Accepted jobs are not discarded on shutdown, see
+     * {@link #drainAccepted(List, List)}.
+     *
+     * @param jobId      a string containing job id.
+     * @param queue      action queueing the job
+     * @param delayNanos delay before the job is queued, in nanoseconds
+     */
+    void delay(String jobId, Accepted queue, long delayNanos) {
+        push(new Timer(jobId, queue, 0, true), delayNanos);
+    }
+
+    /**
+     * Runs an action of the pool on the timer thread once the delay has elapsed, such as publishing a producer
+     * buffer. Unlike accepted jobs, pending actions are discarded on shutdown.
+     *
+     * @param action     action to run, quick and not blocking
+     * @param delayNanos delay before the action runs, in nanoseconds
+     */
+    void runLater(Runnable action, long delayNanos) {
+        push(new Timer(null, action, 0, true), delayNanos);
+    }
+
+    private Timer push(Timer timer, long delayNanos) {
+        timer.deadline = now() + Math.min(Math.max(delayNanos, 0), MAX_DELAY);
+        if (!started.get() && started.compareAndSet(false, true))
+            thread.start();
+        for (; ; ) {
+            Timer head = incoming.get();
+            timer.next = head;
+            if (incoming.compareAndSet(head, timer))
+                break;
+        }
+        if (idle)
+            LockSupport.unpark(thread);
+        return timer;
+    }
+
+    /**
+     * Stops the timer thread. Pending timers are discarded, except the accepted jobs, see
+     * {@link #drainAccepted(List, List)}.
+     */
+    void shutdown() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Waits for the timer thread to stop after {@link #shutdown()}, then takes the accepted jobs still pending, by
+     * deadline, those set aside by a full lane first. Accepted jobs of a job id have increasing deadlines, so they
+     * come out in the order they were accepted.
+     *
+     * @param jobIds  receives the job ids of the jobs
+     * @param actions receives the actions queueing the jobs, which wait for room when run
+     */
+    synchronized void drainAccepted(List<String> jobIds, List<Runnable> actions) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        //timers set aside are older than the buckets, which hold older timers than the stack, each in order
+        List<Timer> accepted = new ArrayList<>();
+        for (Timer timer : stalled) {
+            if (timer.accepted)
+                accepted.add(timer);
+        }
+        stalled.clear();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            collectAccepted(heads[i], accepted);
+            heads[i] = tails[i] = null;
+        }
+        Timer stack = incoming.getAndSet(null);
+        List<Timer> latest = new ArrayList<>();
+        collectAccepted(stack, latest);
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            accepted.add(latest.get(i));
+        }
+        //a stable sort keeps scheduling order between equal deadlines
+        accepted.sort(Comparator.comparingLong(timer -> timer.deadline));
+        for (Timer timer : accepted) {
+            jobIds.add(timer.jobId);
+            actions.add(timer.job);
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static void collectAccepted(Timer timers, List<Timer> accepted) {
+        for (Timer timer = timers; timer != null; timer = timer.next) {
+            //actions of the pool have no job id
+            if (timer.accepted && timer.jobId != null)
+                accepted.add(timer);
+        }
+    }
+
+    @Override
+    public void run() {
+        long tick = now() / tickNanos;
+        int pending = 0;
+        while (!stopped) {
+            long now = now();
+            long tickEnd = (tick + 1) * tickNanos;
+            if (now < tickEnd) {
+                if (pending == 0 && stalled.isEmpty() && incoming.get() == null) {
+                    idle = true;
+                    //a timer pushed before idle was raised is seen here, one pushed after unparks this thread
+                    if (incoming.get() == null && !stopped)
+                        LockSupport.park(this);
+                    idle = false;
+                    //the wheel is empty, so the ticks that went by while parked have nothing to fire
+                    tick = Math.max(tick, now() / tickNanos);
+                } else {
+                    LockSupport.parkNanos(this, tickEnd - now);
+                }
+                continue;
+            }
+            pending += transfer(tick);
+            retry();
+            pending -= expire(tick);
+            tick++;
+            pending += reschedule(tick);
+        }
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * Moves the timers pushed by scheduling threads into their bucket, in scheduling order.
+     *
+     * @return number of timers moved
+     */
+    private int transfer(long tick) {
+        Timer stack = incoming.getAndSet(null);
+        //the stack holds the latest timer first
+        Timer timers = null;
+        while (stack != null) {
+            Timer next = stack.next;
+            stack.next = timers;
+            timers = stack;
+            stack = next;
+        }
+        int count = 0;
+        while (timers != null) {
+            Timer next = timers.next;
+            place(timers, tick);
+            count++;
+            timers = next;
+        }
+        return count;
+    }
+
+    private int reschedule(long tick) {
+        int count = 0;
+        Timer timer = rescheduledHead;
+        rescheduledHead = rescheduledTail = null;
+        while (timer != null) {
+            Timer next = timer.next;
+            place(timer, tick);
+            count++;
+            timer = next;
+        }
+        return count;
+    }
+
+    /**
+     * Appends a timer to the bucket of its deadline tick, or of the given tick if that one has gone by.
+     */
+    private void place(Timer timer, long tick) {
+        long deadlineTick = timer.deadline / tickNanos;
+        timer.rounds = Math.max(deadlineTick - tick, 0) / WHEEL_SIZE;
+        int bucket = (int) (Math.max(deadlineTick, tick) & MASK);
+        timer.next = null;
+        if (tails[bucket] == null)
+            heads[bucket] = timer;
+        else
+            tails[bucket].next = timer;
+        tails[bucket] = timer;
+    }
+
+    /**
+     * Tries the timers set aside again, in order. Once a timer is set aside again, the later ones of its job id wait
+     * behind it.
+     */
+    private void retry() {
+        blocked.clear();
+        for (Iterator<Timer> it = stalled.iterator(); it.hasNext(); ) {
+            Timer timer = it.next();
+            if (timer.cancelled) {
+                timer.setAside = false;
+                it.remove();
+                continue;
+            }
+            if (blocked.contains(timer.jobId))
+                continue;
+            if (queue(timer)) {
+                timer.setAside = false;
+                it.remove();
+            } else
+                blocked.add(timer.jobId);
+        }
+    }
+
+    /**
+     * Fires the due timers of the bucket of the given tick and drops the cancelled ones, counting down the turns
+     * left of the others.
+     *
+     * @return number of timers removed from the bucket
+     */
+    private int expire(long tick) {
+        int bucket = (int) (tick & MASK);
+        int removed = 0;
+        Timer previous = null;
+        Timer timer = heads[bucket];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.cancelled || timer.rounds <= 0) {
+                if (previous == null)
+                    heads[bucket] = next;
+                else
+                    previous.next = next;
+                if (tails[bucket] == timer)
+                    tails[bucket] = previous;
+                removed++;
+                if (!timer.cancelled)
+                    fire(timer);
+            } else {
+                timer.rounds--;
+                previous = timer;
+            }
+            timer = next;
+        }
+        return removed;
+    }
+
+    private void fire(Timer timer) {
+        if (timer.period != 0) {
+            timer.deadline += timer.period;
+            timer.next = null;
+            if (rescheduledTail == null)
+                rescheduledHead = timer;
+            else
+                rescheduledTail.next = timer;
+            rescheduledTail = timer;
+            //runs are not piled up behind a run still set aside
+            if (timer.setAside)
+                return;
+        }
+        //a job id with a job set aside has its later jobs set aside behind it
+        if (!blocked.isEmpty() && blocked.contains(timer.jobId) || !queue(timer)) {
+            timer.setAside = true;
+            stalled.add(timer);
+            blocked.add(timer.jobId);
+        }
+    }
+
+    /**
+     * Queues the job of a due timer, or runs the action of the pool. A scheduled job goes through the rate limiter
+     * once per run, however many times it is tried.
+     *
+     * @return false if the lane of the job is full, the timer must then be tried again
+     */
+    private boolean queue(Timer timer) {
+        try {
+            if (timer.jobId == null) {
+                timer.job.run();
+            } else if (timer.accepted) {
+                return ((Accepted) timer.job).offer();
+            } else if (timer.admitted || !pool.throttle(timer.jobId, timer)) {
+                timer.admitted = true;
+                if (!pool.offerAccepted(timer.jobId, timer))
+                    return false;
+                timer.admitted = false;
+            }
+        } catch (RejectedExecutionException e) {
+            //refused by a lane shut down, which counts it, or by the rate limiter; a periodic job still runs at its
+            //next period
+        } catch (RuntimeException e) {
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+        return true;
+    }
+
+    /**
+     * A job the pool has already accepted, queued by the timer thread once due, see
+     * {@link #delay(String, Accepted, long)}.
+     */
+    interface Accepted extends Runnable {
+
+        /**
+         * Queues the job if its lane has room, never waiting.
+         *
+         * @return false if the lane is full
+         * @throws RejectedExecutionException if the lane has been shut down
+         */
+        boolean offer();
+
+        /**
+         * Queues the job, waiting for room in a full lane whatever the overflow policy. Called on shutdown, once
+         * the timer thread has stopped.
+         */
+        @Override
+        void run();
+    }
+
+    /**
+     * A pending timer, linked in its bucket by the timer thread. Runs as the job submitted to the lane.
+     */
+    private static final class Timer implements ScheduledJob, Runnable {
+
+        final String jobId;
+        final Runnable job;
+        final long period;
+        final boolean accepted;
+        long deadline;
+        long rounds;
+        Timer next;
+        /**
+         * Set while a run has gone through the rate limiter and waits for room in its lane.
+         */
+        boolean admitted;
+        /**
+         * Set while a run waits among the timers set aside.
+         */
+        boolean setAside;
+        volatile boolean cancelled;
+
+        Timer(String jobId, Runnable job, long period, boolean accepted) {
+            this.jobId = jobId;
+            this.job = job;
+            this.period = period;
+            this.accepted = accepted;
+        }
+
+        @Override
+        public String jobId() {
+            return jobId;
+        }
+
+        @Override
+        public synchronized boolean cancel() {
+            if (cancelled)
+                return false;
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled)
+                return;
+            try {
+                job.run();
+            } catch (Throwable t) {
+                //like a scheduled executor, a periodic job that throws is not run again
+                if (period != 0)
+                    cancelled = true;
+                throw t;
+            }
+        }
+    }
+}
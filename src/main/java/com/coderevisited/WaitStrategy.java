@@ -0,0 +1,99 @@
+package com.coderevisited;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+
+/**
+ * How an idle lane thread waits for its next job, see
+ * {@link ThreadPoolWithJobAffinityExecutor.Builder#waitStrategy(WaitStrategy)}.
+ * <p>
+ * An idle lane thread first spins, then yields, then parks, each for a configurable number of attempts. Spinning
+ * and yielding pick up a new job within nanoseconds to a few microseconds but keep a core busy; parking frees the
+ * core but a parked thread takes tens of microseconds to wake up. Producers only unpark a lane thread that is
+ * actually parked, so submitting to a busy or spinning lane never costs a wake-up.
+ */
+public final class WaitStrategy {
+
+    private static final WaitStrategy BLOCKING = new WaitStrategy(0, 0, true, "blocking");
+    private static final WaitStrategy BUSY_SPIN = new WaitStrategy(Integer.MAX_VALUE, 0, false, "busySpin");
+
+    private final int spins;
+    private final int yields;
+    private final boolean parks;
+    private final String name;
+
+    private WaitStrategy(int spins, int yields, boolean parks, String name) {
+        this.spins = spins;
+        this.yields = yields;
+        this.parks = parks;
+        this.name = name;
+    }
+
+    /**
+     * Parks as soon as the lane is empty. Costs no CPU while idle. The default.
+     *
+     * @return the blocking strategy
+     */
+    public static WaitStrategy blocking() {
+        return BLOCKING;
+    }
+
+    /**
+     * Never gives up the core. Lowest latency, at the price of one core per lane, even while idle.
+     *
+     * @return the busy spin strategy
+     */
+    public static WaitStrategy busySpin() {
+        return BUSY_SPIN;
+    }
+
+    /**
+     * Spins, then yields the core to other runnable threads for as long as the lane is idle.
+     *
+     * @param spins number of spin attempts before yielding
+     * @return a spin then yield strategy
+     */
+    public static WaitStrategy spinThenYield(int spins) {
+        if (spins < 0)
+            throw new IllegalArgumentException();
+        return new WaitStrategy(spins, Integer.MAX_VALUE, false, "spinThenYield(" + spins + ")");
+    }
+
+    /**
+     * Spins, then yields, then parks until a producer queues a job.
+     *
+     * @param spins  number of spin attempts before yielding
+     * @param yields number of yields before parking
+     * @return a spin then park strategy
+     */
+    public static WaitStrategy spinThenPark(int spins, int yields) {
+        if (spins < 0 || yields < 0)
+            throw new IllegalArgumentException();
+        return new WaitStrategy(spins, yields, true, "spinThenPark(" + spins + ", " + yields + ")");
+    }
+
+    /**
+     * Waits once for the lane to receive a job.
+     *
+     * @param lane     the idle lane, called from its thread
+     * @param attempts number of times the lane already waited since it last found a job
+     * @return number of attempts including this one
+     */
+    int idle(Lane lane, int attempts) {
+        if (attempts < spins)
+            Thread.onSpinWait();
+        else if (!parks || attempts - spins < yields)
+            Thread.yield();
+        else
+            lane.park();
+        return attempts == Integer.MAX_VALUE ? attempts : attempts + 1;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
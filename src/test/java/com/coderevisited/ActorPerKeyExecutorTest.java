@@ -0,0 +1,101 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ActorPerKeyExecutorTest {
+
+    /**
+     * Tests if jobs of a job id run in submission order on a single thread
+     */
+    @Test
+    public void expectJobOrderAndAffinity() {
+        ActorPerKeyExecutor pool = new ActorPerKeyExecutor();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        for (int i = 0; i < 1000; i++) {
+            final int sequence = i;
+            pool.submit("MyJob", () -> {
+                order.add(sequence);
+                threads.add(Thread.currentThread());
+            });
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(1000, order.size());
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals(i, order.get(i).intValue());
+            Assert.assertSame(threads.get(0), threads.get(i));
+        }
+    }
+
+    /**
+     * Tests if a job blocked on one job id does not delay the jobs of another job id
+     */
+    @Test
+    public void expectNoHeadOfLineBlocking() throws InterruptedException {
+        ActorPerKeyExecutor pool = new ActorPerKeyExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        pool.submit("Blocked", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pool.submit("Free", other::countDown);
+
+        Assert.assertTrue(other.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, pool.poolSize());
+        release.countDown();
+        pool.shutdown();
+        Assert.assertEquals(0, pool.poolSize());
+    }
+
+    /**
+     * Tests if an idle mailbox is retired and a new one serves the job id afterwards
+     */
+    @Test
+    public void expectIdleMailboxRetired() throws InterruptedException {
+        ActorPerKeyExecutor pool = new ActorPerKeyExecutor(ActorPerKeyExecutor.defaultThreadFactory(),
+                10, TimeUnit.MILLISECONDS);
+        final CountDownLatch first = new CountDownLatch(1);
+        pool.submit("MyJob", first::countDown);
+        Assert.assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.poolSize() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(0, pool.poolSize());
+
+        final CountDownLatch second = new CountDownLatch(1);
+        pool.submit("MyJob", second::countDown);
+        Assert.assertTrue(second.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if Job submission fails after terminating the pool
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void checkExceptionAfterShutdown() {
+        ActorPerKeyExecutor pool = new ActorPerKeyExecutor();
+        pool.shutdown();
+        pool.submit("MyJob", () -> {
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class LaneRoutersTest {
+
+    /**
+     * A job id whose hashcode is Integer.MIN_VALUE
+     */
+    private static final String MIN_HASH_JOB_ID = "polygenelubricants";
+
+    /**
+     * Tests if every built-in router stays within the pool, including for a hashcode of Integer.MIN_VALUE
+     */
+    @Test
+    public void expectLanesWithinPool() {
+        Assert.assertEquals(Integer.MIN_VALUE, MIN_HASH_JOB_ID.hashCode());
+        LaneRouter[] routers = {LaneRouters.modulo(), LaneRouters.mixedHash(), LaneRouters.jumpConsistentHash()};
+        for (LaneRouter router : routers) {
+            for (int lanes = 1; lanes <= 17; lanes++) {
+                int lane = router.lane(MIN_HASH_JOB_ID, lanes);
+                Assert.assertTrue(router + " " + lanes, lane >= 0 && lane < lanes);
+                for (int i = 0; i < 1000; i++) {
+                    lane = router.lane("ORDER-" + i, lanes);
+                    Assert.assertTrue(router + " " + lanes, lane >= 0 && lane < lanes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if sequential job ids are spread evenly by the mixed hash, with and without a power of two pool size
+     */
+    @Test
+    public void expectMixedHashSpreadsSequentialIds() {
+        for (int lanes : new int[]{8, 12}) {
+            int[] counts = new int[lanes];
+            for (int i = 0; i < 120000; i++) {
+                counts[LaneRouters.mixedHash().lane("ORDER-" + (1000 + i), lanes)]++;
+            }
+            int expected = 120000 / lanes;
+            for (int count : counts) {
+                Assert.assertEquals(expected, count, expected * 0.05);
+            }
+        }
+    }
+
+    /**
+     * Tests if growing the pool by one lane moves job ids to the new lane only, and about 1 / n of them
+     */
+    @Test
+    public void expectJumpConsistentHashMovesFewKeys() {
+        int moved = 0;
+        for (int i = 0; i < 100000; i++) {
+            String jobId = "ORDER-" + i;
+            int before = LaneRouters.jumpConsistentHash().lane(jobId, 9);
+            int after = LaneRouters.jumpConsistentHash().lane(jobId, 10);
+            if (before != after) {
+                Assert.assertEquals(9, after);
+                moved++;
+            }
+        }
+        Assert.assertEquals(10000, moved, 1000);
+    }
+
+    /**
+     * Tests if pinned job ids go to their lane, unless that lane does not exist in the pool
+     */
+    @Test
+    public void expectOverridesTakePrecedence() {
+        LaneRouter router = LaneRouters.withOverrides(Collections.singletonMap("HEAVY", 3), LaneRouters.modulo());
+
+        Assert.assertEquals(3, router.lane("HEAVY", 4));
+        Assert.assertEquals(LaneRouters.modulo().lane("HEAVY", 2), router.lane("HEAVY", 2));
+        Assert.assertEquals(LaneRouters.modulo().lane("LIGHT", 4), router.lane("LIGHT", 4));
+    }
+
+    /**
+     * Tests if the pool runs jobs on the lane chosen by its router
+     */
+    @Test
+    public void expectPoolUsesRouter() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .router(LaneRouters.withOverrides(Collections.singletonMap("HEAVY", 2), LaneRouters.mixedHash()))
+                .build();
+        final String[] thread = new String[1];
+        pool.submit("HEAVY", new Runnable() {
+            @Override
+            public void run() {
+                thread[0] = Thread.currentThread().getName();
+            }
+        });
+        pool.shutdown();
+
+        Assert.assertTrue(thread[0], thread[0].endsWith("-lane-2"));
+    }
+
+    /**
+     * Tests if a router returning a lane outside of the pool is reported
+     */
+    @Test(expected = IllegalStateException.class)
+    public void checkRouterOutOfRange() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .router(new LaneRouter() {
+                    @Override
+                    public int lane(String jobId, int lanes) {
+                        return lanes;
+                    }
+                })
+                .build();
+        try {
+            pool.submit("MyJob", new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests if numeric job ids are routed like their decimal string by every built-in router
+     */
+    @Test
+    public void expectNumericJobIdsRoutedLikeStrings() {
+        LaneRouter[] routers = {LaneRouters.modulo(), LaneRouters.mixedHash(), LaneRouters.jumpConsistentHash(),
+                LaneRouters.withOverrides(Collections.singletonMap("42", 5), LaneRouters.mixedHash())};
+        long[] jobIds = {0, 7, -7, 42, 1000003, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long jobId : jobIds) {
+            Assert.assertEquals(Long.toString(jobId).hashCode(), LaneRouters.decimalHashCode(jobId));
+            for (LaneRouter router : routers) {
+                for (int lanes = 1; lanes <= 12; lanes++) {
+                    Assert.assertEquals(router.lane(Long.toString(jobId), lanes), router.lane(jobId, lanes));
+                }
+            }
+        }
+        for (long jobId = -100000; jobId <= 100000; jobId += 13) {
+            Assert.assertEquals(Long.toString(jobId).hashCode(), LaneRouters.decimalHashCode(jobId));
+        }
+    }
+
+    /**
+     * Tests if jobs of a numeric job id run on the lane of its decimal string
+     */
+    @Test
+    public void expectNumericSubmitOnSameLane() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        final String[] threads = new String[3];
+        pool.submit(1234567L, new Runnable() {
+            @Override
+            public void run() {
+                threads[0] = Thread.currentThread().getName();
+            }
+        });
+        pool.submit(1234567, new Runnable() {
+            @Override
+            public void run() {
+                threads[1] = Thread.currentThread().getName();
+            }
+        });
+        pool.submit("1234567", new Runnable() {
+            @Override
+            public void run() {
+                threads[2] = Thread.currentThread().getName();
+            }
+        });
+        pool.shutdown();
+
+        Assert.assertEquals(threads[0], threads[1]);
+        Assert.assertEquals(threads[0], threads[2]);
+    }
+}
@@ -0,0 +1,90 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class LaneWaitStrategyTest {
+
+    /**
+     * Tests if no job is lost by lanes going idle and waking up again, whatever their wait strategy
+     */
+    @Test
+    public void expectEveryJobRunWithEachStrategy() throws InterruptedException {
+        WaitStrategy[] strategies = {WaitStrategy.blocking(), WaitStrategy.busySpin(), WaitStrategy.spinThenYield(100),
+                WaitStrategy.spinThenPark(100, 10)};
+        for (WaitStrategy strategy : strategies) {
+            final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                    .waitStrategy(strategy)
+                    .build();
+            final AtomicInteger executed = new AtomicInteger();
+            for (int round = 0; round < 50; round++) {
+                final CountDownLatch done = new CountDownLatch(20);
+                for (int i = 0; i < 20; i++) {
+                    pool.submit(i, () -> {
+                        executed.incrementAndGet();
+                        done.countDown();
+                    });
+                }
+                //let the lanes run dry, so that the next round finds them waiting
+                Assert.assertTrue(strategy.toString(), done.await(5, TimeUnit.SECONDS));
+            }
+            pool.shutdown();
+            Assert.assertEquals(strategy.toString(), 1000, executed.get());
+        }
+    }
+
+    /**
+     * Tests if an idle blocking lane parks while an idle spinning lane keeps running
+     */
+    @Test
+    public void expectOnlyBlockingLaneParks() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .router(new LaneRouter() {
+                    @Override
+                    public int lane(String jobId, int lanes) {
+                        return Integer.parseInt(jobId);
+                    }
+                })
+                .waitStrategy(1, WaitStrategy.busySpin())
+                .build();
+        Thread blocking = laneThread(pool, "0");
+        Thread spinning = laneThread(pool, "1");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (blocking.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(Thread.State.WAITING, blocking.getState());
+        Assert.assertEquals(Thread.State.RUNNABLE, spinning.getState());
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if a wait strategy for a lane outside of the pool is refused
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkLaneOutOfRange() {
+        ThreadPoolWithJobAffinityExecutor.builder(2).waitStrategy(2, WaitStrategy.busySpin()).build();
+    }
+
+    private static Thread laneThread(ThreadPoolWithJobAffinityExecutor pool, String jobId)
+            throws InterruptedException {
+        final Thread[] thread = new Thread[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submit(jobId, () -> {
+            thread[0] = Thread.currentThread();
+            done.countDown();
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        return thread[0];
+    }
+}
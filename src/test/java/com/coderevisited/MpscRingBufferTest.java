@@ -0,0 +1,117 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class MpscRingBufferTest {
+
+    /**
+     * Tests if a batch offer appends as many elements as fit, in order, and refuses once full or closed
+     */
+    @Test
+    public void expectBatchOfferUpToCapacity() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        Integer[] elements = {0, 1, 2, 3, 4, 5};
+        Assert.assertEquals(4, buffer.offer(elements, 0, 6, 0L));
+        Assert.assertEquals(0, buffer.offer(elements, 4, 2, 0L));
+
+        Integer[] batch = new Integer[3];
+        Assert.assertEquals(3, buffer.drainTo(batch));
+        Assert.assertEquals(2, buffer.offer(elements, 4, 2, 0L));
+        batch = new Integer[4];
+        Assert.assertEquals(3, buffer.drainTo(batch));
+        Assert.assertArrayEquals(new Integer[]{3, 4, 5, null}, batch);
+
+        buffer.close();
+        Assert.assertEquals(-1, buffer.offer(elements, 0, 1, 0L));
+    }
+
+    /**
+     * Tests if capacity is rounded up to a power of two and offers beyond it are refused
+     */
+    @Test
+    public void expectFullWhenCapacityReached() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        Assert.assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(MpscRingBuffer.OFFERED, buffer.offer(i));
+        }
+        Assert.assertEquals(MpscRingBuffer.FULL, buffer.offer(4));
+
+        Integer[] batch = new Integer[2];
+        Assert.assertEquals(2, buffer.drainTo(batch));
+        Assert.assertEquals(0, batch[0].intValue());
+        Assert.assertEquals(1, batch[1].intValue());
+        Assert.assertEquals(MpscRingBuffer.OFFERED, buffer.offer(4));
+        Assert.assertEquals(3, buffer.size());
+    }
+
+    /**
+     * Tests if elements claimed before close are still drained, and nothing is accepted after it
+     */
+    @Test
+    public void expectDrainAfterClose() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.close();
+
+        Assert.assertTrue(buffer.isClosed());
+        Assert.assertEquals(MpscRingBuffer.CLOSED, buffer.offer(3));
+        Integer[] batch = new Integer[8];
+        Assert.assertEquals(2, buffer.drainTo(batch));
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    /**
+     * Tests if elements of each producer are drained in the order that producer offered them
+     */
+    @Test
+    public void expectPerProducerOrderWithConcurrentProducers() throws InterruptedException {
+        final MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+        final int producers = 4;
+        final int perProducer = 20000;
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        long[] element = {producer, i};
+                        while (buffer.offer(element) != MpscRingBuffer.OFFERED) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        long[][] batch = new long[16][];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int n = buffer.drainTo(batch);
+            for (int i = 0; i < n; i++) {
+                int producer = (int) batch[i][0];
+                Assert.assertEquals(next[producer], batch[i][1]);
+                next[producer]++;
+            }
+            received += n;
+            if (n == 0)
+                Thread.yield();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+        Assert.assertTrue(buffer.isEmpty());
+    }
+}
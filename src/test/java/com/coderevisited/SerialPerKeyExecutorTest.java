@@ -0,0 +1,96 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class SerialPerKeyExecutorTest {
+
+    /**
+     * Tests if jobs of each job id run in submission order and never concurrently, with several producers
+     */
+    @Test
+    public void expectJobOrderPerKey() throws InterruptedException {
+        final SerialPerKeyExecutor pool = new SerialPerKeyExecutor(4);
+        final int keys = 8;
+        final List<List<Integer>> executed = new ArrayList<>();
+        final AtomicBoolean[] running = new AtomicBoolean[keys];
+        final AtomicInteger violations = new AtomicInteger();
+        for (int k = 0; k < keys; k++) {
+            executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            running[k] = new AtomicBoolean();
+        }
+
+        for (int i = 0; i < 2000; i++) {
+            final int key = i % keys;
+            final int sequence = i / keys;
+            pool.submit("MyJob" + key, () -> {
+                if (!running[key].compareAndSet(false, true))
+                    violations.incrementAndGet();
+                executed.get(key).add(sequence);
+                running[key].set(false);
+            });
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(0, violations.get());
+        for (List<Integer> order : executed) {
+            Assert.assertEquals(250, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                Assert.assertEquals(i, order.get(i).intValue());
+            }
+        }
+        Assert.assertEquals(0, pool.activeKeys());
+    }
+
+    /**
+     * Tests if a busy job id does not hold back another one while a worker is free
+     */
+    @Test
+    public void expectNoHeadOfLineBlocking() throws InterruptedException {
+        SerialPerKeyExecutor pool = new SerialPerKeyExecutor(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        pool.submit("Busy", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pool.submit("Free", other::countDown);
+
+        Assert.assertTrue(other.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if a shared pool is left running on shutdown, and submissions are rejected afterwards
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void checkSharedPoolLeftRunning() {
+        SerialPerKeyExecutor pool = new SerialPerKeyExecutor(ForkJoinPool.commonPool());
+        pool.submit("MyJob", () -> {
+        });
+        pool.shutdown();
+
+        Assert.assertFalse(ForkJoinPool.commonPool().isShutdown());
+        pool.submit("MyJob", () -> {
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolBatchSubmitTest {
+
+    /**
+     * Tests if batches of mixed job ids run in order per job id, after jobs submitted one by one, and on the lane
+     * of their job id
+     */
+    @Test
+    public void expectOrderPerJobIdAcrossBatches() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4).laneCapacity(16).build();
+        final int keys = 10;
+        final List<List<Integer>> executed = new ArrayList<>();
+        final List<List<String>> threads = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            threads.add(Collections.synchronizedList(new ArrayList<String>()));
+        }
+
+        JobBatch batch = new JobBatch(4);
+        int sequence = 0;
+        for (int round = 0; round < 20; round++) {
+            pool.submit("MyJob0", record(executed, threads, 0, sequence++));
+            batch.clear();
+            for (int i = 0; i < 50; i++) {
+                int key = (i * 7 + round) % keys;
+                Runnable job = record(executed, threads, key, sequence++);
+                if (key % 2 == 0)
+                    batch.add("MyJob" + key, job);
+                else
+                    batch.add(key, job);
+            }
+            pool.submitAll(batch);
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (int k = 0; k < keys; k++) {
+            List<Integer> order = executed.get(k);
+            total += order.size();
+            for (int i = 1; i < order.size(); i++) {
+                Assert.assertTrue(order.get(i - 1) < order.get(i));
+            }
+            Assert.assertEquals(1, threads.get(k).stream().distinct().count());
+        }
+        Assert.assertEquals(20 * 51, total);
+    }
+
+    /**
+     * Tests if the jobs that do not fit a full lane are rejected under the reject policy, after the others
+     */
+    @Test
+    public void expectRemainderRejectedWhenLaneFull() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(4)
+                .overflowPolicy(OverflowPolicy.REJECT)
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("MyJob", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        JobBatch batch = new JobBatch();
+        for (int i = 0; i < 6; i++) {
+            final int sequence = i;
+            batch.add("MyJob", () -> executed.add(sequence));
+        }
+        try {
+            pool.submitAll(batch);
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(2, pool.metrics().get(0).rejected());
+        }
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertEquals(List.of(0, 1, 2, 3), executed);
+    }
+
+    /**
+     * Tests if implementations without grouping submit the jobs of a batch one by one
+     */
+    @Test
+    public void expectDefaultSubmitsEachJob() {
+        ActorPerKeyExecutor pool = new ActorPerKeyExecutor();
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        JobBatch batch = new JobBatch();
+        for (int i = 0; i < 100; i++) {
+            final int sequence = i;
+            batch.add(42L, () -> executed.add(sequence));
+        }
+        pool.submitAll(batch);
+        pool.shutdown();
+
+        Assert.assertEquals(100, executed.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    private static Runnable record(final List<List<Integer>> executed, final List<List<String>> threads,
+                                   final int key, final int sequence) {
+        return () -> {
+            executed.get(key).add(sequence);
+            threads.get(key).add(Thread.currentThread().getName());
+        };
+    }
+}
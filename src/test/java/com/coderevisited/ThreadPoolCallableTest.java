@@ -0,0 +1,109 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolCallableTest {
+
+    /**
+     * Tests if results complete the futures in order with the plain jobs of the job id, on its lane thread
+     */
+    @Test
+    public void expectResultsInOrderOnLane() throws Exception {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int sequence = i;
+            if (i % 2 == 0) {
+                pool.execute("MyJob", () -> {
+                    executed.add(sequence);
+                });
+            } else {
+                futures.add(pool.submit("MyJob", () -> {
+                    executed.add(sequence);
+                    threads.add(Thread.currentThread().getName());
+                    return sequence * 10;
+                }));
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals((2 * i + 1) * 10, futures.get(i).get(5, TimeUnit.SECONDS).intValue());
+        }
+        pool.shutdown();
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+        Assert.assertEquals(1, threads.stream().distinct().count());
+    }
+
+    /**
+     * Tests if a failing task fails its future only, and the lane carries on
+     */
+    @Test
+    public void expectExceptionCompletesFuture() throws Exception {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        CompletableFuture<String> failed = pool.submit("MyJob", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> next = pool.submit("MyJob", () -> "next");
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals("next", next.get(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if a task whose future is cancelled before its turn does not run
+     */
+    @Test
+    public void expectCancelledTaskSkipped() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.execute("MyJob", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Boolean> future = pool.submit("MyJob", () -> ran.getAndSet(true));
+        Assert.assertTrue(future.cancel(false));
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertFalse(ran.get());
+        Assert.assertTrue(future.isCancelled());
+    }
+
+    /**
+     * Tests if other implementations return futures through the default method
+     */
+    @Test
+    public void expectFutureFromSerialPerKeyExecutor() throws Exception {
+        SerialPerKeyExecutor pool = new SerialPerKeyExecutor(2);
+        Assert.assertEquals(42, pool.submit("MyJob", () -> 42).get(5, TimeUnit.SECONDS).intValue());
+        pool.shutdown();
+    }
+}
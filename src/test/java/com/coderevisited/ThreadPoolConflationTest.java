@@ -0,0 +1,141 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolConflationTest {
+
+    /**
+     * Tests if a burst of conflated jobs for a busy job id queues a single job, running the latest one only
+     */
+    @Test
+    public void expectLatestJobOnly() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(1);
+        CountDownLatch release = blockLane(pool);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 1000; i++) {
+            final int price = i;
+            pool.submitConflated("EURUSD", () -> executed.add("EURUSD@" + price));
+            pool.submitConflated("GBPUSD", () -> executed.add("GBPUSD@" + price));
+        }
+        Assert.assertEquals(2, pool.metrics().get(0).queueDepth());
+        Assert.assertEquals(2, pool.pendingConflatedJobs());
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertEquals(List.of("EURUSD@999", "GBPUSD@999"), executed);
+        Assert.assertEquals(0, pool.pendingConflatedJobs());
+    }
+
+    /**
+     * Tests if pending jobs are merged with the merge function, and a job submitted once the pending one has started
+     * is queued again
+     */
+    @Test
+    public void expectMergedJobs() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(1);
+        CountDownLatch release = blockLane(pool);
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong runs = new AtomicLong();
+        for (int i = 1; i <= 100; i++) {
+            final int quantity = i;
+            pool.submitConflated("ORDER-1", () -> {
+                total.addAndGet(quantity);
+                runs.incrementAndGet();
+            }, (pending, job) -> () -> {
+                pending.run();
+                job.run();
+            });
+        }
+        release.countDown();
+        //the merged job must have started, or the next one would replace it
+        while (pool.pendingConflatedJobs() != 0) {
+            Thread.sleep(1);
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submitConflated("ORDER-1", done::countDown);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(5050, total.get());
+        Assert.assertEquals(100, runs.get());
+    }
+
+    /**
+     * Tests if conflated and plain jobs of a job id run in submission order, less the replaced ones
+     */
+    @Test
+    public void expectOrderWithPlainJobs() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 1000; i++) {
+            final int sequence = i;
+            Runnable job = () -> {
+                executed.add(sequence);
+            };
+            if (i % 3 == 0)
+                pool.submit("MyJob", job);
+            else
+                pool.submitConflated("MyJob", job);
+        }
+        pool.shutdown();
+
+        for (int i = 1; i < executed.size(); i++) {
+            Assert.assertTrue(executed.get(i - 1) < executed.get(i));
+        }
+        Assert.assertEquals(999, executed.get(executed.size() - 1).intValue());
+    }
+
+    /**
+     * Tests if a conflated job discarded by a full lane no longer takes merges, so the next one is queued and runs
+     */
+    @Test
+    public void expectDroppedJobNotMergedInto() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(1)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build();
+        CountDownLatch release = blockLane(pool);
+        pool.submitConflated("EURUSD", () -> Assert.fail("Must not run"));
+        pool.submit("Other", () -> {
+        });
+        Assert.assertEquals(1, pool.metrics().get(0).dropped());
+        Assert.assertEquals(0, pool.pendingConflatedJobs());
+
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submitConflated("EURUSD", done::countDown);
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(0, pool.pendingConflatedJobs());
+    }
+
+    private static CountDownLatch blockLane(ThreadPoolWithJobAffinityExecutor pool) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("Blocker", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+}
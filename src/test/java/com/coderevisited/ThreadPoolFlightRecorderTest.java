@@ -0,0 +1,159 @@
+package com.coderevisited;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolFlightRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests if a lane records its jobs in order, with consistent timestamps, and keeps only the latest ones
+     */
+    @Test
+    public void expectLatestJobsRecorded() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .flightRecorder(16)
+                .build();
+        final CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0)
+                pool.submit("MyJob" + i, done::countDown);
+            else
+                pool.submit((long) i, done::countDown);
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        List<FlightRecord> records = pool.flightRecords(0);
+        Assert.assertEquals(16, records.size());
+        for (int i = 0; i < 16; i++) {
+            FlightRecord record = records.get(i);
+            int sequence = 84 + i;
+            String jobId = sequence % 2 == 0 ? "MyJob" + sequence : Integer.toString(sequence);
+            Assert.assertEquals(jobId.hashCode(), record.jobIdHash());
+            Assert.assertEquals(0, record.lane());
+            Assert.assertFalse(record.isRunning());
+            Assert.assertTrue(record.queueWaitNanos() >= 0);
+            Assert.assertTrue(record.endedAt() >= record.startedAt());
+        }
+    }
+
+    /**
+     * Tests if a lane stuck in a job shows it as running, also with metrics disabled
+     */
+    @Test
+    public void expectStuckJobShownRunning() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .metricsEnabled(false)
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("Stuck", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        List<FlightRecord> records = pool.flightRecords(pool.laneOf("Stuck"));
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertEquals(1, records.size());
+        Assert.assertTrue(records.get(0).isRunning());
+        Assert.assertEquals("Stuck".hashCode(), records.get(0).jobIdHash());
+        Assert.assertTrue(records.get(0).runTimeNanos() >= TimeUnit.MILLISECONDS.toNanos(20));
+        Assert.assertTrue(pool.dumpFlightRecorder().contains(Integer.toHexString("Stuck".hashCode())));
+    }
+
+    /**
+     * Tests if nothing is recorded with the flight recorder disabled
+     */
+    @Test
+    public void expectNothingRecordedWhenDisabled() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .flightRecorder(0)
+                .build();
+        pool.submit("MyJob", () -> {
+        });
+        pool.shutdown();
+
+        Assert.assertTrue(pool.flightRecords(pool.laneOf("MyJob")).isEmpty());
+        Assert.assertEquals("", pool.dumpFlightRecorder());
+    }
+
+    /**
+     * Tests if jobs running for longer than the threshold, and only those, are reported as Flight Recorder events
+     */
+    @Test
+    public void expectSlowJobEvents() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("slow-jobs.jfr");
+        List<RecordedEvent> events = new ArrayList<>();
+        int lane;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.coderevisited.SlowJob");
+            recording.start();
+            ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                    .slowJobThreshold(20, TimeUnit.MILLISECONDS)
+                    .build();
+            lane = pool.laneOf("Slow");
+            pool.submit("Slow", () -> {
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            pool.submit("Fast", () -> {
+            });
+            pool.shutdown();
+            recording.stop();
+            recording.dump(file);
+        }
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals("com.coderevisited.SlowJob"))
+                events.add(event);
+        }
+
+        Assert.assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        Assert.assertEquals("Slow", event.getString("jobId"));
+        Assert.assertTrue(event.getString("lane").endsWith("-lane-" + lane));
+        Assert.assertTrue(event.getDuration("runTime").compareTo(Duration.ofMillis(30)) >= 0);
+    }
+
+    /**
+     * Tests if the lane of a flight record is validated
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkUnknownLane() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        try {
+            pool.flightRecords(2);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class ThreadPoolInputValidationTest {
     public void checkNullJob() {
 
         ThreadPoolWithJobAffinityExecutor executor = new ThreadPoolWithJobAffinityExecutor(2);
-        executor.submit("MyJob", null);
+        executor.submit("MyJob", (Runnable) null);
 
     }
 
@@ -0,0 +1,189 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests if durable jobs run their handler with their payload, in submission order
+     */
+    @Test
+    public void expectHandlerRunWithPayload() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .journal(folder.getRoot().toPath())
+                .durableHandler(1, recorder(executed))
+                .build();
+        for (int i = 0; i < 100; i++) {
+            pool.submitDurable("MyJob", 1, ("payload-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(100, executed.size());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("MyJob:payload-" + i, executed.get(i));
+        }
+    }
+
+    /**
+     * Tests if durable jobs that never ran are replayed by the next pool in per job id order, and only those
+     */
+    @Test
+    public void expectUnrunJobsReplayed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch started = new CountDownLatch(1);
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .journal(directory, 4096)
+                .durableHandler(1, recorder(executed))
+                .durableHandler(2, (jobId, payload) -> {
+                    started.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .build();
+        pool.submitDurable("First", 1, "done".getBytes(StandardCharsets.UTF_8));
+        pool.submitDurable("Blocker", 2, new byte[0]);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 200; i++) {
+            pool.submitDurable("MyJob" + (i % 3), 1, Integer.toString(i).getBytes(StandardCharsets.UTF_8));
+        }
+        pool.shutdownNow();
+        Assert.assertEquals(List.of("First:done"), executed);
+        Assert.assertTrue(folder.getRoot().listFiles().length > 1);
+
+        executed.clear();
+        ThreadPoolWithJobAffinityExecutor restarted = ThreadPoolWithJobAffinityExecutor.builder(3)
+                .journal(directory, 4096)
+                .durableHandler(1, recorder(executed))
+                .durableHandler(2, (jobId, payload) -> executed.add(jobId))
+                .build();
+        restarted.shutdown();
+
+        //the blocker returned once interrupted, which acknowledged it
+        Assert.assertEquals(200, executed.size());
+        Assert.assertFalse(executed.contains("Blocker"));
+        for (int k = 0; k < 3; k++) {
+            int previous = -1;
+            for (String job : executed) {
+                if (job.startsWith("MyJob" + k + ":")) {
+                    int sequence = Integer.parseInt(job.substring(job.indexOf(':') + 1));
+                    Assert.assertTrue(sequence > previous);
+                    previous = sequence;
+                }
+            }
+        }
+
+        executed.clear();
+        ThreadPoolWithJobAffinityExecutor again = ThreadPoolWithJobAffinityExecutor.builder(3)
+                .journal(directory, 4096)
+                .durableHandler(1, recorder(executed))
+                .durableHandler(2, (jobId, payload) -> executed.add(jobId))
+                .build();
+        again.shutdown();
+        Assert.assertTrue(executed.isEmpty());
+    }
+
+    /**
+     * Tests if rolled over segments are deleted once all their jobs have run
+     */
+    @Test
+    public void expectAcknowledgedSegmentsDeleted() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .journal(folder.getRoot().toPath(), 1024)
+                .durableHandler(1, recorder(executed))
+                .build();
+        for (int i = 0; i < 1000; i++) {
+            pool.submitDurable("MyJob" + (i % 10), 1, new byte[32]);
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(1000, executed.size());
+        File[] segments = folder.getRoot().listFiles();
+        Assert.assertEquals(1, segments.length);
+    }
+
+    /**
+     * Tests if segments rolled over and acknowledged are released by the journal, whether their last record is
+     * acknowledged before or after the roll over
+     */
+    @Test
+    public void expectReleasedSegmentsDropped() {
+        final List<String> executed = new ArrayList<>();
+        Journal journal = new Journal(folder.getRoot().toPath(), 1024, Map.of(1, recorder(executed)));
+        for (int i = 0; i < 1000; i++) {
+            journal.append("MyJob", 1, new byte[32]).run();
+            Assert.assertEquals(1, journal.openSegments());
+        }
+        List<Journal.Record> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add(journal.append("MyJob", 1, new byte[32]));
+        }
+        Assert.assertTrue(journal.openSegments() > 10);
+        for (Journal.Record record : records) {
+            record.run();
+        }
+        Assert.assertEquals(1, journal.openSegments());
+        journal.close();
+
+        Assert.assertEquals(2000, executed.size());
+        Assert.assertEquals(1, folder.getRoot().listFiles().length);
+    }
+
+    /**
+     * Tests if durable jobs require a registered handler
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkUnknownHandler() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .journal(folder.getRoot().toPath())
+                .build();
+        try {
+            pool.submitDurable("MyJob", 7, new byte[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests if durable jobs require a journal
+     */
+    @Test(expected = IllegalStateException.class)
+    public void checkWithoutJournal() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        try {
+            pool.submitDurable("MyJob", 1, new byte[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static DurableJobHandler recorder(final List<String> executed) {
+        return (jobId, payload) -> executed.add(jobId + ":" + new String(payload, StandardCharsets.UTF_8));
+    }
+}
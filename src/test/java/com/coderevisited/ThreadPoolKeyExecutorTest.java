@@ -0,0 +1,132 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolKeyExecutorTest {
+
+    /**
+     * Tests if the async stages of a future chained on the executor of a job id run on the lane thread of the job id
+     */
+    @Test
+    public void expectAsyncStagesOnLane() throws Exception {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        Executor executor = pool.forKey("MyJob");
+        String lane = pool.submit("MyJob", () -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> {
+            threads.add(Thread.currentThread().getName());
+            return 20;
+        }, executor).thenApplyAsync(value -> {
+            threads.add(Thread.currentThread().getName());
+            return value + 22;
+        }, executor);
+        Assert.assertEquals(42, result.get(5, TimeUnit.SECONDS).intValue());
+        pool.shutdown();
+
+        Assert.assertEquals(List.of(lane, lane), threads);
+    }
+
+    /**
+     * Tests if a job given from the lane thread runs at once when nothing is queued behind the running job
+     */
+    @Test
+    public void expectInlineWhenNothingQueued() throws Exception {
+        final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final AtomicBoolean ran = new AtomicBoolean();
+        boolean inline = pool.submit("MyJob", () -> {
+            pool.forKey("MyJob").execute(() -> ran.set(true));
+            return ran.get();
+        }).get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        Assert.assertTrue(inline);
+    }
+
+    /**
+     * Tests if a job given from the lane thread is queued behind the jobs already waiting on the lane
+     */
+    @Test
+    public void expectQueuedBehindWaitingJobs() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(1);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch queued = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submit("MyJob", () -> {
+            try {
+                queued.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add("first");
+            pool.forKey("MyJob").execute(() -> {
+                executed.add("continuation");
+                done.countDown();
+            });
+        });
+        pool.submit("MyJob", () -> {
+            executed.add("second");
+        });
+        queued.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(List.of("first", "second", "continuation"), executed);
+    }
+
+    /**
+     * Tests if a long chain of jobs each giving the next one to the executor runs in order without exhausting the
+     * stack of the lane thread
+     */
+    @Test
+    public void expectLongChainInOrder() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final Executor executor = pool.forKey("MyJob");
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            private int sequence;
+
+            @Override
+            public void run() {
+                executed.add(sequence);
+                if (++sequence < 100000)
+                    executor.execute(this);
+                else
+                    done.countDown();
+            }
+        });
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(100000, executed.size());
+        for (int i = 0; i < executed.size(); i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    /**
+     * Tests if other implementations submit through the default method
+     */
+    @Test
+    public void expectExecutorFromSerialPerKeyExecutor() throws Exception {
+        SerialPerKeyExecutor pool = new SerialPerKeyExecutor(2);
+        CompletableFuture<Integer> result = CompletableFuture.supplyAsync(() -> 42, pool.forKey("MyJob"));
+        Assert.assertEquals(42, result.get(5, TimeUnit.SECONDS).intValue());
+        pool.shutdown();
+    }
+}
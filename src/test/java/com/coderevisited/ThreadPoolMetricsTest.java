@@ -0,0 +1,119 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolMetricsTest {
+
+    /**
+     * Tests if percentiles are reported within the precision of the histogram
+     */
+    @Test
+    public void expectHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        Assert.assertEquals(1000, histogram.count());
+        Assert.assertEquals(1000000, histogram.max());
+        Assert.assertEquals(500500, histogram.mean(), 0.001);
+        Assert.assertEquals(500000, histogram.valueAtPercentile(50), 500000 * 0.04);
+        Assert.assertEquals(990000, histogram.valueAtPercentile(99), 990000 * 0.04);
+        Assert.assertEquals(1000000, histogram.valueAtPercentile(100));
+    }
+
+    /**
+     * Tests if every value maps to a bucket whose highest value is not below it
+     */
+    @Test
+    public void expectBucketsCoverTheirValues() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int index = LatencyHistogram.index(value);
+            Assert.assertTrue(LatencyHistogram.highestValue(index) >= value);
+            Assert.assertTrue(index == 0 || LatencyHistogram.highestValue(index - 1) < value);
+        }
+    }
+
+    /**
+     * Tests if submitted and completed jobs are counted per lane
+     */
+    @Test
+    public void expectLaneCounters() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            pool.submit("MyJob", job);
+        }
+        pool.shutdown();
+
+        long submitted = 0;
+        long completed = 0;
+        List<LaneMetrics> metrics = pool.metrics();
+        Assert.assertEquals(4, metrics.size());
+        for (LaneMetrics lane : metrics) {
+            submitted += lane.submitted();
+            completed += lane.completed();
+            Assert.assertEquals(0, lane.queueDepth());
+            Assert.assertEquals(lane.completed(), lane.queueWait().count());
+            Assert.assertEquals(lane.completed(), lane.runTime().count());
+        }
+        Assert.assertEquals(100, submitted);
+        Assert.assertEquals(100, completed);
+    }
+
+    /**
+     * Tests if histograms are absent when metrics are disabled, while counts are still kept
+     */
+    @Test
+    public void expectNoHistogramsWhenDisabled() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .metricsEnabled(false)
+                .build();
+        pool.submit("MyJob", new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        pool.shutdown();
+
+        long completed = 0;
+        for (LaneMetrics lane : pool.metrics()) {
+            Assert.assertNull(lane.queueWait());
+            Assert.assertNull(lane.runTime());
+            completed += lane.completed();
+        }
+        Assert.assertEquals(1, completed);
+    }
+
+    /**
+     * Tests if the MBean is registered, readable, and unregistered on shutdown
+     */
+    @Test
+    public void expectMBeanRegistration() throws Exception {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(3);
+        ObjectName name = pool.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        Assert.assertTrue(server.isRegistered(name));
+        Assert.assertEquals(3, server.getAttribute(name, "PoolSize"));
+        Assert.assertEquals(3, ((long[]) server.getAttribute(name, "CompletedJobs")).length);
+
+        pool.shutdown();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,213 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolMultiKeyTest {
+
+    /**
+     * Tests if a multi-key job runs after the earlier jobs of each of its job ids and before their later ones, while
+     * the lanes go on with the jobs of other job ids
+     */
+    @Test
+    public void expectOrderedWithEveryJobId() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        String first = "MyJob";
+        String second = jobIdOnLane(pool, 1 - pool.laneOf(first), first);
+        String other = jobIdOnLane(pool, pool.laneOf(second), second);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherJobRan = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+
+        pool.submit(first, () -> {
+            await(release);
+            executed.add("first");
+        });
+        pool.submit(second, () -> executed.add("second"));
+        pool.submitMultiKey(Arrays.asList(first, second), () -> executed.add("both"));
+        pool.submit(second, () -> {
+            executed.add("second after");
+            done.countDown();
+        });
+        pool.submit(first, () -> {
+            executed.add("first after");
+            done.countDown();
+        });
+        //queued behind the part on the lane of the second job id, not held back
+        pool.submit(other, otherJobRan::countDown);
+        pool.submit(other, done::countDown);
+
+        Assert.assertTrue(otherJobRan.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        Assert.assertEquals(Collections.singletonList("second"), new ArrayList<>(executed));
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(5, executed.size());
+        Assert.assertEquals(2, executed.indexOf("both"));
+        Assert.assertTrue(executed.indexOf("first") < 2);
+        for (LaneMetrics metrics : pool.metrics()) {
+            Assert.assertEquals(metrics.submitted(), metrics.completed());
+        }
+    }
+
+    /**
+     * Tests if transfers between random accounts, submitted by concurrent threads, never run alongside another job
+     * of the same account and keep the total balance
+     */
+    @Test
+    public void expectConcurrentTransfersSerializedPerAccount() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .laneCapacity(64)
+                .build();
+        final int accounts = 16;
+        final long[] balances = new long[accounts];
+        Arrays.fill(balances, 1000);
+        final AtomicInteger[] running = new AtomicInteger[accounts];
+        for (int i = 0; i < accounts; i++) {
+            running[i] = new AtomicInteger();
+        }
+        final AtomicInteger overlaps = new AtomicInteger();
+        final int threads = 4;
+        final int transfers = 5000;
+        final CountDownLatch done = new CountDownLatch(threads * transfers);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < transfers; i++) {
+                    final int from = random.nextInt(accounts);
+                    final int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    Runnable transfer = () -> {
+                        if (running[from].getAndIncrement() != 0 | running[to].getAndIncrement() != 0)
+                            overlaps.incrementAndGet();
+                        balances[from] -= 1;
+                        balances[to] += 1;
+                        running[from].decrementAndGet();
+                        running[to].decrementAndGet();
+                        done.countDown();
+                    };
+                    if (i % 4 == 0) {
+                        pool.submit("Account" + from, () -> {
+                            if (running[from].getAndIncrement() != 0)
+                                overlaps.incrementAndGet();
+                            running[from].decrementAndGet();
+                            done.countDown();
+                        });
+                    } else {
+                        pool.submitMultiKey(Arrays.asList("Account" + from, "Account" + to), transfer);
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(0, overlaps.get());
+        long total = 0;
+        for (long balance : balances) {
+            total += balance;
+        }
+        Assert.assertEquals(1000L * accounts, total);
+    }
+
+    /**
+     * Tests if a multi-key job waiting for a lane is handed back once, under its first job id, by a shutdown now
+     */
+    @Test
+    public void expectAbandonedJobReturnedOnce() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        String first = "MyJob";
+        String second = jobIdOnLane(pool, 1 - pool.laneOf(first), first);
+        final CountDownLatch started = new CountDownLatch(1);
+        pool.submit(first, () -> {
+            started.countDown();
+            await(new CountDownLatch(1));
+        });
+        Runnable both = () -> Assert.fail("Must not run");
+        Runnable later = () -> {
+        };
+        pool.submitMultiKey(Arrays.asList(first, second), both);
+        pool.submit(second, later);
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+
+        Map<String, List<Runnable>> unrun = pool.shutdownNow();
+
+        Assert.assertEquals(Collections.singletonList(both), unrun.get(first));
+        Assert.assertEquals(Collections.singletonList(later), unrun.get(second));
+        Assert.assertTrue(pool.isTerminated());
+    }
+
+    /**
+     * Tests if multi-key jobs are refused by pools moving job ids between lanes
+     */
+    @Test(expected = IllegalStateException.class)
+    public void checkRebalancingRefused() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rebalancing(1, TimeUnit.HOURS)
+                .build();
+        try {
+            pool.submitMultiKey(Arrays.asList("MyJob", "Other"), () -> {
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests if a multi-key job needs a job id
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkNoJobId() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        try {
+            pool.submitMultiKey(Collections.<String>emptyList(), () -> {
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return a job id routed to the given lane, other than the excluded one
+     */
+    private static String jobIdOnLane(ThreadPoolWithJobAffinityExecutor pool, int lane, String excluded) {
+        for (int i = 0; ; i++) {
+            String candidate = "Job" + i;
+            if (pool.laneOf(candidate) == lane && !candidate.equals(excluded))
+                return candidate;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
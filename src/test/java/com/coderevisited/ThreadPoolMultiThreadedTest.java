@@ -13,7 +13,7 @@ import java.util.concurrent.RejectedExecutionException;
 public class ThreadPoolMultiThreadedTest {
 
     /**
-     * Tests pool size and map size after submitting many tasks
+     * Tests pool size and number of live lanes after submitting many tasks
      */
     @Test
     public void expectThreadPoolSizeWorksAfterSubmittingManyTasks() {
@@ -70,11 +70,11 @@ public class ThreadPoolMultiThreadedTest {
 
 
         Assert.assertEquals(10, pool.poolSize());
-        Assert.assertEquals(10, pool.map.size());
+        Assert.assertEquals(10, pool.activeLanes());
 
         pool.shutdown();
 
-        Assert.assertEquals(0, pool.map.size());
+        Assert.assertEquals(0, pool.activeLanes());
     }
 
     /**
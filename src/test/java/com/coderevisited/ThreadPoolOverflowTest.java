@@ -0,0 +1,178 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolOverflowTest {
+
+    /**
+     * Tests if a job is rejected at once when its lane is full
+     */
+    @Test
+    public void expectRejectWhenFull() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(4)
+                .overflowPolicy(OverflowPolicy.REJECT)
+                .build();
+        CountDownLatch release = blockLane(pool);
+        for (int i = 0; i < 4; i++) {
+            pool.submit("MyJob", noop());
+        }
+        try {
+            pool.submit("MyJob", noop());
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, pool.metrics().get(0).rejected());
+        }
+        release.countDown();
+        pool.shutdown();
+        Assert.assertEquals(5, pool.metrics().get(0).completed());
+    }
+
+    /**
+     * Tests if a blocked submitter gives up once the block timeout has expired
+     */
+    @Test
+    public void expectRejectAfterBlockTimeout() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(4)
+                .blockTimeout(50, TimeUnit.MILLISECONDS)
+                .build();
+        CountDownLatch release = blockLane(pool);
+        for (int i = 0; i < 4; i++) {
+            pool.submit("MyJob", noop());
+        }
+        long start = System.nanoTime();
+        try {
+            pool.submit("MyJob", noop());
+            Assert.fail();
+        } catch (RejectedExecutionException e) {
+            Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        release.countDown();
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if the oldest queued jobs are discarded to make room, and counted
+     */
+    @Test
+    public void expectOldestDropped() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(4)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build();
+        CountDownLatch release = blockLane(pool);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 6; i++) {
+            final int sequence = i;
+            pool.submit("MyJob", () -> {
+                executed.add(sequence);
+            });
+        }
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertEquals(List.of(2, 3, 4, 5), executed);
+        LaneMetrics metrics = pool.metrics().get(0);
+        Assert.assertEquals(2, metrics.dropped());
+        Assert.assertEquals(7, metrics.submitted());
+        Assert.assertEquals(5, metrics.completed());
+    }
+
+    /**
+     * Tests if jobs of a job id still run in order and one at a time when submitters run jobs of a full lane
+     */
+    @Test
+    public void expectOrderWithCallerRuns() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .laneCapacity(2)
+                .overflowPolicy(OverflowPolicy.CALLER_RUNS)
+                .build();
+        final int producers = 4;
+        final List<List<Integer>> executed = new ArrayList<>();
+        final AtomicBoolean[] running = new AtomicBoolean[producers];
+        final AtomicInteger violations = new AtomicInteger();
+        for (int p = 0; p < producers; p++) {
+            executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            running[p] = new AtomicBoolean();
+        }
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int key = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    final int sequence = i;
+                    pool.submit("MyJob" + key, () -> {
+                        if (!running[key].compareAndSet(false, true))
+                            violations.incrementAndGet();
+                        executed.get(key).add(sequence);
+                        running[key].set(false);
+                    });
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(0, violations.get());
+        for (List<Integer> order : executed) {
+            Assert.assertEquals(2000, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                Assert.assertEquals(i, order.get(i).intValue());
+            }
+        }
+    }
+
+    /**
+     * Tests if dropping jobs is refused together with rebalancing
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkDropOldestWithRebalancing() {
+        ThreadPoolWithJobAffinityExecutor.builder(2)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .rebalancing(1, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Occupies the lane thread of the only lane until the returned latch is released.
+     */
+    private static CountDownLatch blockLane(ThreadPoolWithJobAffinityExecutor pool) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("MyJob", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static Runnable noop() {
+        return () -> {
+        };
+    }
+}
@@ -0,0 +1,208 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolProducerBufferTest {
+
+    /**
+     * Tests if buffered jobs are held until the buffer holds the batch size, then run in submission order
+     */
+    @Test
+    public void expectPublishedOnBatchSize() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .producerBuffering(4, 1, TimeUnit.HOURS)
+                .build();
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            final int sequence = i;
+            if (i == 3) {
+                Thread.sleep(50);
+                Assert.assertTrue(executed.isEmpty());
+            }
+            pool.submit(i % 2 == 0 ? "MyJob" : "Other", () -> {
+                executed.add(sequence);
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(4, executed.size());
+        Assert.assertTrue(executed.indexOf(0) < executed.indexOf(2));
+        Assert.assertTrue(executed.indexOf(1) < executed.indexOf(3));
+    }
+
+    /**
+     * Tests if a buffer that is not full is published once its oldest job has waited for the longest delay
+     */
+    @Test
+    public void expectPublishedAfterDelay() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .producerBuffering(1000, 20, TimeUnit.MILLISECONDS)
+                .build();
+        final CountDownLatch done = new CountDownLatch(2);
+        long start = System.nanoTime();
+        pool.submit("MyJob", done::countDown);
+        pool.submit(42L, done::countDown);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if a buffer published after the longest delay to a full lane holds up neither the timer thread nor the
+     * producer, and keeps the jobs left over ahead of the jobs added later
+     */
+    @Test
+    public void expectFullLaneNotBlockingTimer() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .laneCapacity(2)
+                .producerBuffering(1000, 5, TimeUnit.MILLISECONDS)
+                .build();
+        String full = "MyJob";
+        String other = "Other";
+        for (int i = 0; pool.laneOf(other) == pool.laneOf(full); i++) {
+            other = "Other" + i;
+        }
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit(full, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pool.flush();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(11);
+        for (int i = 0; i < 10; i++) {
+            final int sequence = i;
+            pool.submit(full, () -> {
+                executed.add(sequence);
+                done.countDown();
+            });
+        }
+        final CountDownLatch otherRan = new CountDownLatch(1);
+        pool.schedule(other, otherRan::countDown, 1, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(otherRan.await(1, TimeUnit.SECONDS));
+        //the timer thread has tried the buffer by now, the producer still adds to it
+        pool.submit(full, () -> {
+            executed.add(10);
+            done.countDown();
+        });
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        for (int i = 0; i < 11; i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    /**
+     * Tests if flush publishes the buffer of the calling thread at once
+     */
+    @Test
+    public void expectPublishedOnFlush() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .producerBuffering(1000, 1, TimeUnit.HOURS)
+                .build();
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submit("MyJob", done::countDown);
+        Assert.assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        pool.flush();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if the jobs of a job id run in the order each producer submitted them
+     */
+    @Test
+    public void expectPerProducerOrder() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .producerBuffering(64, 1, TimeUnit.MILLISECONDS)
+                .build();
+        final int producers = 4;
+        final int jobs = 20000;
+        final int[][] last = new int[producers][8];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        final AtomicInteger executed = new AtomicInteger();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 1; i <= jobs; i++) {
+                    final int key = i % 8;
+                    final int sequence = i;
+                    //jobs of a key run one at a time on its lane, which publishes the entries of its key
+                    pool.submit("MyJob" + key, () -> {
+                        if (last[producer][key] >= sequence)
+                            outOfOrder.incrementAndGet();
+                        last[producer][key] = sequence;
+                        executed.incrementAndGet();
+                    });
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        //the producers have died with jobs left in their buffers
+        pool.shutdown();
+
+        Assert.assertEquals(producers * jobs, executed.get());
+        Assert.assertEquals(0, outOfOrder.get());
+    }
+
+    /**
+     * Tests if buffered jobs are returned by shutdownNow, in submission order
+     */
+    @Test
+    public void expectBufferedReturnedByShutdownNow() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .producerBuffering(1000, 1, TimeUnit.HOURS)
+                .build();
+        Runnable first = () -> {
+        };
+        Runnable second = () -> {
+        };
+        pool.submit("MyJob", first);
+        pool.submit(42L, second);
+
+        Map<String, List<Runnable>> unrun = pool.shutdownNow();
+
+        Assert.assertEquals(List.of(first), unrun.get("MyJob"));
+        Assert.assertEquals(List.of(second), unrun.get("42"));
+    }
+
+    /**
+     * Tests if producer buffering is refused together with rate limiting
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkWithRateLimit() {
+        ThreadPoolWithJobAffinityExecutor.builder(2)
+                .producerBuffering(16, 1, TimeUnit.MILLISECONDS)
+                .rateLimit(10, 1, RateLimitPolicy.reject())
+                .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolRateLimitTest {
+
+    /**
+     * Tests if a job id is rejected once it has used up its burst, while other job ids are not
+     */
+    @Test
+    public void expectRejectedBeyondBurst() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(1, 5, RateLimitPolicy.reject())
+                .build();
+        for (int i = 0; i < 5; i++) {
+            pool.submit("Flood", noop());
+        }
+        try {
+            pool.submit("Flood", noop());
+            Assert.fail("Expected the sixth job to be rejected");
+        } catch (RejectedExecutionException e) {
+            //expected
+        }
+        pool.submit("Quiet", noop());
+        pool.submit(42L, noop());
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if jobs exceeding the limit are handed to the handler instead of being queued
+     */
+    @Test
+    public void expectHandedOff() {
+        final List<String> handedOff = Collections.synchronizedList(new ArrayList<String>());
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(1, 2, RateLimitPolicy.handOff((jobId, job) -> handedOff.add(jobId)))
+                .build();
+        for (int i = 0; i < 4; i++) {
+            pool.submit("Flood", noop());
+            pool.submit(42L, noop());
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(List.of("Flood", "42", "Flood", "42"), handedOff);
+    }
+
+    /**
+     * Tests if delayed jobs of a job id run at the limited rate and in submission order, while another job id
+     * sharing the lane is not held up
+     */
+    @Test
+    public void expectDelayedInOrder() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .rateLimit(200, 10, RateLimitPolicy.delay())
+                .build();
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            final int sequence = i;
+            pool.submit("Flood", () -> {
+                executed.add(sequence);
+                done.countDown();
+            });
+        }
+        final CountDownLatch quiet = new CountDownLatch(1);
+        pool.submit("Quiet", quiet::countDown);
+        Assert.assertTrue(quiet.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(done.getCount() > 0);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+        pool.shutdown();
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+    }
+
+    /**
+     * Tests if delayed jobs finding their lane full are neither rejected nor dropped, but queued in order once it
+     * has room again
+     */
+    @Test
+    public void expectDelayedKeptWhenLaneFull() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .laneCapacity(4)
+                .overflowPolicy(OverflowPolicy.REJECT)
+                .rateLimit(100, 1, RateLimitPolicy.delay())
+                .build();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("Blocker", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            final int sequence = i;
+            pool.submit("Flood", () -> {
+                executed.add(sequence);
+                done.countDown();
+            });
+        }
+        //the first job went through and the others are delayed, they find the lane full
+        for (int j = 0; ; j++) {
+            try {
+                pool.submit("Filler" + j, noop());
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        Thread.sleep(50);
+        Assert.assertEquals(10, done.getCount());
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(i, executed.get(i).intValue());
+        }
+        Assert.assertEquals(1, pool.metrics().get(0).rejected());
+    }
+
+    /**
+     * Tests if delayed jobs are queued by shutdown, in submission order
+     */
+    @Test
+    public void expectDelayedRunOnShutdown() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(0.1, 1, RateLimitPolicy.delay())
+                .build();
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 3; i++) {
+            final int sequence = i;
+            pool.submit("Flood", () -> {
+                executed.add(sequence);
+            });
+        }
+        pool.shutdown();
+
+        Assert.assertEquals(List.of(0, 1, 2), executed);
+    }
+
+    /**
+     * Tests if delayed jobs are returned by shutdownNow, as submitted
+     */
+    @Test
+    public void expectDelayedReturnedByShutdownNow() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(0.1, 1, RateLimitPolicy.delay())
+                .build();
+        Runnable first = distinctJob();
+        Runnable second = distinctJob();
+        pool.submit("Flood", noop());
+        pool.submit("Flood", first);
+        pool.submit("Flood", second);
+
+        Map<String, List<Runnable>> unrun = pool.shutdownNow();
+
+        //the job within the limit may not have started either
+        List<Runnable> jobs = unrun.get("Flood");
+        Assert.assertEquals(List.of(first, second), jobs.subList(jobs.size() - 2, jobs.size()));
+    }
+
+    /**
+     * Tests if the burst is validated
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkRateLimitBurst() {
+        ThreadPoolWithJobAffinityExecutor.builder(2).rateLimit(10, 0, RateLimitPolicy.reject()).build();
+    }
+
+    /**
+     * @return a job that is not the same instance as any other
+     */
+    private static Runnable distinctJob() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static Runnable noop() {
+        return () -> {
+        };
+    }
+}
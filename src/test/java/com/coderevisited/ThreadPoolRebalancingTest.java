@@ -0,0 +1,211 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolRebalancingTest {
+
+    /**
+     * Tests if one of two hot job ids sharing a lane is moved to the idle lane, with the jobs of each job id still
+     * executed one at a time and in submission order across the move.
+     */
+    @Test
+    public void expectHotKeyMovedWithOrderPreserved() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rebalancing(1, TimeUnit.HOURS)
+                .build();
+        String[] jobIds = sameLaneJobIds(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit(jobIds[0], new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        final List<List<Integer>> executed = new ArrayList<>();
+        final List<List<String>> threads = new ArrayList<>();
+        final AtomicInteger violations = new AtomicInteger();
+        final AtomicBoolean[] running = {new AtomicBoolean(), new AtomicBoolean()};
+        for (int k = 0; k < 2; k++) {
+            executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+            threads.add(Collections.synchronizedList(new ArrayList<String>()));
+        }
+
+        for (int i = 0; i < 200; i++) {
+            if (i == 100) {
+                Assert.assertEquals(1, pool.rebalanceNow());
+            }
+            for (int k = 0; k < 2; k++) {
+                final int key = k;
+                final int sequence = i;
+                pool.submit(jobIds[k], new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!running[key].compareAndSet(false, true))
+                            violations.incrementAndGet();
+                        executed.get(key).add(sequence);
+                        threads.get(key).add(Thread.currentThread().getName());
+                        running[key].set(false);
+                    }
+                });
+            }
+        }
+        Assert.assertNotEquals(pool.laneOf(jobIds[0]), pool.laneOf(jobIds[1]));
+
+        release.countDown();
+        pool.shutdown();
+
+        Assert.assertEquals(0, violations.get());
+        for (int k = 0; k < 2; k++) {
+            List<Integer> order = executed.get(k);
+            Assert.assertEquals(200, order.size());
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals(i, order.get(i).intValue());
+            }
+        }
+        int moved = pool.laneOf(jobIds[0]) != pool.getPool(jobIds[0]) ? 0 : 1;
+        List<String> movedThreads = threads.get(moved);
+        Assert.assertNotEquals(movedThreads.get(0), movedThreads.get(199));
+        Assert.assertEquals(threads.get(1 - moved).get(0), threads.get(1 - moved).get(199));
+    }
+
+    /**
+     * Tests if a move to a full lane is given up without blocking the old lane, which runs the held jobs in order
+     */
+    @Test
+    public void expectMoveToFullLaneGivenUp() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .laneCapacity(4)
+                .rebalancing(1, TimeUnit.HOURS)
+                .build();
+        String[] jobIds = sameLaneJobIds(2);
+        String coldJobId = "Cold";
+        for (int i = 0; pool.getPool(coldJobId) != 1; i++) {
+            coldJobId = "Cold" + i;
+        }
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 100; i++) {
+            for (String jobId : jobIds) {
+                pool.submit(jobId, () -> {
+                });
+            }
+        }
+
+        CountDownLatch releaseCold = new CountDownLatch(1);
+        CountDownLatch coldStarted = new CountDownLatch(1);
+        pool.submit(coldJobId, () -> {
+            coldStarted.countDown();
+            await(releaseCold);
+        });
+        Assert.assertTrue(coldStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            pool.submit(coldJobId, () -> {
+            });
+        }
+        CountDownLatch releaseHot = new CountDownLatch(1);
+        CountDownLatch hotStarted = new CountDownLatch(1);
+        pool.submit(jobIds[0], () -> {
+            hotStarted.countDown();
+            await(releaseHot);
+        });
+        Assert.assertTrue(hotStarted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, pool.rebalanceNow());
+
+        //the fence and the jobs of the job id staying on the old lane fill it
+        final CountDownLatch done = new CountDownLatch(6);
+        for (int i = 0; i < 3; i++) {
+            for (final String jobId : jobIds) {
+                final String name = jobId + "@" + i;
+                pool.submit(jobId, () -> {
+                    executed.add(name);
+                    threads.add(Thread.currentThread().getName());
+                    done.countDown();
+                });
+            }
+        }
+        releaseHot.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, pool.laneOf(jobIds[0]));
+        Assert.assertEquals(0, pool.laneOf(jobIds[1]));
+        releaseCold.countDown();
+        pool.shutdown();
+
+        for (String jobId : jobIds) {
+            List<String> order = new ArrayList<>();
+            for (String name : executed) {
+                if (name.startsWith(jobId + "@"))
+                    order.add(name);
+            }
+            Assert.assertEquals(List.of(jobId + "@0", jobId + "@1", jobId + "@2"), order);
+        }
+        Assert.assertEquals(1, new HashSet<>(threads).size());
+    }
+
+    /**
+     * Tests if nothing moves while the load is balanced
+     */
+    @Test
+    public void expectNoMoveWhenBalanced() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rebalancing(1, TimeUnit.HOURS)
+                .build();
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            pool.submit("0", job);
+            pool.submit("1", job);
+        }
+        Assert.assertEquals(0, pool.rebalanceNow());
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if the threshold is validated
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkThresholdBelowOne() {
+        ThreadPoolWithJobAffinityExecutor.builder(2).rebalancing(1, TimeUnit.SECONDS).rebalanceThreshold(0.5).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String[] sameLaneJobIds(int count) {
+        String[] jobIds = new String[count];
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            String jobId = "MyJob" + i;
+            if (LaneRouters.modulo().lane(jobId, 2) == 0)
+                jobIds[found++] = jobId;
+        }
+        return jobIds;
+    }
+}
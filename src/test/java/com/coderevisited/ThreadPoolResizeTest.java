@@ -0,0 +1,183 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolResizeTest {
+
+    /**
+     * Tests if jobs of each job id run in submission order, one at a time, while the pool grows and shrinks
+     */
+    @Test
+    public void expectOrderWhileResizing() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .maxPoolSize(6)
+                .router(LaneRouters.jumpConsistentHash())
+                .build();
+        final int jobIds = 50;
+        final int jobsPerId = 400;
+        final List<List<Integer>> executed = new ArrayList<>();
+        for (int k = 0; k < jobIds; k++) {
+            executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < jobsPerId; i++) {
+                for (int k = 0; k < jobIds; k++) {
+                    final List<Integer> jobs = executed.get(k);
+                    final int sequence = i;
+                    pool.submit("MyJob" + k, () -> {
+                        jobs.add(sequence);
+                    });
+                }
+            }
+        });
+        submitter.start();
+        for (int size : new int[]{4, 6, 3, 1, 5}) {
+            pool.resize(size);
+            Assert.assertEquals(size, pool.poolSize());
+        }
+        submitter.join();
+        pool.shutdown();
+
+        for (List<Integer> jobs : executed) {
+            Assert.assertEquals(jobsPerId, jobs.size());
+            for (int i = 0; i < jobsPerId; i++) {
+                Assert.assertEquals(i, jobs.get(i).intValue());
+            }
+        }
+    }
+
+    /**
+     * Tests if a moved job id starts on its new lane only once its jobs queued on the old lane have completed
+     */
+    @Test
+    public void expectMovedJobIdFenced() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(1)
+                .maxPoolSize(2)
+                .router(LaneRouters.jumpConsistentHash())
+                .build();
+        String moved = null;
+        for (int i = 0; moved == null; i++) {
+            if (LaneRouters.jumpConsistentHash().lane("MyJob" + i, 2) == 1)
+                moved = "MyJob" + i;
+        }
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        pool.submit(moved, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executed.add("old lane");
+        });
+        Thread resize = new Thread(() -> pool.resize(2));
+        resize.start();
+        while (pool.poolSize() != 2) {
+            Thread.yield();
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submit(moved, () -> {
+            executed.add("new lane");
+            done.countDown();
+        });
+        Thread.sleep(50);
+        Assert.assertEquals(1, done.getCount());
+        release.countDown();
+        resize.join();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(List.of("old lane", "new lane"), executed);
+    }
+
+    /**
+     * Tests if lanes beyond the new size are shut down, and reported again once the pool grows back
+     */
+    @Test
+    public void expectRetiredLanesTerminated() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .maxPoolSize(4)
+                .prestartLanes(true)
+                .build();
+        Assert.assertEquals(4, pool.activeLanes());
+        pool.resize(2);
+        Assert.assertEquals(2, pool.activeLanes());
+        Assert.assertEquals(2, pool.metrics().size());
+        pool.resize(4);
+        Assert.assertEquals(4, pool.metrics().size());
+        Assert.assertEquals(0, pool.metrics().get(3).submitted());
+        pool.shutdown();
+        Assert.assertTrue(pool.isTerminated());
+    }
+
+    /**
+     * Tests if resizing requires a maximum pool size
+     */
+    @Test(expected = IllegalStateException.class)
+    public void checkResizeWithoutMaxPoolSize() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        try {
+            pool.resize(3);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests if the new size is validated against the maximum pool size
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkResizeAboveMaxPoolSize() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2).maxPoolSize(4).build();
+        try {
+            pool.resize(5);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests if a shut down pool is not resized
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void checkResizeAfterShutdown() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2).maxPoolSize(4).build();
+        pool.shutdown();
+        pool.resize(3);
+    }
+
+    /**
+     * Tests if resizing is refused together with rebalancing
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkResizingWithRebalancing() {
+        ThreadPoolWithJobAffinityExecutor.builder(2)
+                .maxPoolSize(4)
+                .rebalancing(1, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Tests if resizing is refused together with dropping the oldest job of a full lane, which could drop a fence
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkResizingWithDropOldest() {
+        ThreadPoolWithJobAffinityExecutor.builder(1)
+                .maxPoolSize(2)
+                .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                .build();
+    }
+}
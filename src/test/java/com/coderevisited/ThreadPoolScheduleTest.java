@@ -0,0 +1,204 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolScheduleTest {
+
+    /**
+     * Tests if delayed jobs of a job id run after their delay, by deadline, and in scheduling order for equal delays
+     */
+    @Test
+    public void expectDelayedJobsByDeadline() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(12);
+        long start = System.nanoTime();
+        for (int delay = 50; delay >= 0; delay -= 25) {
+            for (int i = 0; i < 4; i++) {
+                final String job = delay + "@" + i;
+                pool.schedule("MyJob", () -> {
+                    executed.add(job);
+                    done.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        pool.shutdown();
+
+        Assert.assertEquals(List.of("0@0", "0@1", "0@2", "0@3", "25@0", "25@1", "25@2", "25@3",
+                "50@0", "50@1", "50@2", "50@3"), executed);
+    }
+
+    /**
+     * Tests if due jobs of a full lane wait for room without holding up the jobs due on other lanes, and then run in
+     * scheduling order
+     */
+    @Test
+    public void expectFullLaneNotBlockingTimer() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .laneCapacity(4)
+                .build();
+        String full = "MyJob";
+        String other = "Other";
+        for (int i = 0; pool.laneOf(other) == pool.laneOf(full); i++) {
+            other = "Other" + i;
+        }
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit(full, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            pool.submit(full, () -> {
+            });
+        }
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            final int sequence = i;
+            pool.schedule(full, () -> {
+                executed.add(sequence);
+                done.countDown();
+            }, 10 * i, TimeUnit.MILLISECONDS);
+        }
+        final CountDownLatch otherRan = new CountDownLatch(1);
+        pool.schedule(other, otherRan::countDown, 20, TimeUnit.MILLISECONDS);
+
+        Assert.assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, done.getCount());
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(List.of(0, 1, 2), executed);
+    }
+
+    /**
+     * Tests if a large number of pending jobs all run on the lane of their job id
+     */
+    @Test
+    public void expectManyPendingJobs() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        final int jobs = 200000;
+        final CountDownLatch done = new CountDownLatch(jobs);
+        final AtomicInteger misrouted = new AtomicInteger();
+        for (int i = 0; i < jobs; i++) {
+            final String jobId = "MyJob" + (i % 1000);
+            final String lane = "-" + pool.laneOf(jobId);
+            pool.schedule(jobId, () -> {
+                if (!Thread.currentThread().getName().endsWith(lane))
+                    misrouted.incrementAndGet();
+                done.countDown();
+            }, i % 700, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(0, misrouted.get());
+    }
+
+    /**
+     * Tests if a periodic job runs until it is cancelled
+     */
+    @Test
+    public void expectPeriodicUntilCancelled() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch fiveRuns = new CountDownLatch(5);
+        ScheduledJob job = pool.scheduleAtFixedRate("MyJob", () -> {
+            runs.incrementAndGet();
+            fiveRuns.countDown();
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(fiveRuns.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(job.cancel());
+        Assert.assertFalse(job.cancel());
+        Assert.assertTrue(job.isCancelled());
+        int cancelledAt = runs.get();
+        Thread.sleep(50);
+        pool.shutdown();
+
+        Assert.assertTrue(runs.get() <= cancelledAt + 1);
+    }
+
+    /**
+     * Tests if a periodic job that throws is not run again
+     */
+    @Test
+    public void expectPeriodicCancelledOnException() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final AtomicInteger runs = new AtomicInteger();
+        ScheduledJob job = pool.scheduleAtFixedRate("MyJob", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("Expected by the test");
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        pool.shutdown();
+
+        Assert.assertEquals(1, runs.get());
+        Assert.assertTrue(job.isCancelled());
+    }
+
+    /**
+     * Tests if a job cancelled before its delay has elapsed does not run
+     */
+    @Test
+    public void expectCancelledJobNotRun() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        ScheduledJob cancelled = pool.schedule("MyJob", runs::incrementAndGet, 200, TimeUnit.MILLISECONDS);
+        pool.schedule("MyJob", done::countDown, 300, TimeUnit.MILLISECONDS);
+        cancelled.cancel();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        Assert.assertEquals(0, runs.get());
+        Assert.assertEquals("MyJob", cancelled.jobId());
+    }
+
+    /**
+     * Tests if jobs can not be scheduled once the pool is shut down
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void checkScheduleAfterShutdown() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        pool.shutdown();
+        pool.schedule("MyJob", () -> {
+        }, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tests if the period of a periodic job is validated
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkNonPositivePeriod() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        try {
+            pool.scheduleAtFixedRate("MyJob", () -> {
+            }, 0, 0, TimeUnit.MILLISECONDS);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolShutdownTest {
+
+    /**
+     * Tests if shutdownNow interrupts the running job and returns the others by job id, in queue order
+     */
+    @Test
+    public void expectUnrunJobsByJobId() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(1);
+        CountDownLatch interrupted = blockLane(pool);
+        Runnable first = distinctJob();
+        Runnable second = distinctJob();
+        Runnable numeric = distinctJob();
+        Runnable batched = distinctJob();
+        pool.submit("MyJob", first);
+        pool.submit(42L, numeric);
+        pool.submit("MyJob", second);
+        pool.submitAll(new JobBatch().add("Other", batched));
+
+        Map<String, List<Runnable>> unrun = pool.shutdownNow();
+
+        Assert.assertEquals(0, interrupted.getCount());
+        Assert.assertEquals(List.of("MyJob", "42", "Other"), new ArrayList<>(unrun.keySet()));
+        Assert.assertEquals(List.of(first, second), unrun.get("MyJob"));
+        Assert.assertEquals(List.of(numeric), unrun.get("42"));
+        Assert.assertEquals(List.of(batched), unrun.get("Other"));
+        Assert.assertTrue(pool.isShutdown());
+        Assert.assertTrue(pool.isTerminated());
+
+        LaneMetrics metrics = pool.metrics().get(0);
+        Assert.assertEquals(5, metrics.submitted());
+        Assert.assertEquals(1, metrics.completed());
+        Assert.assertEquals(4, metrics.dropped());
+    }
+
+    /**
+     * Tests if jobs are rejected once shutdownNow has been called
+     */
+    @Test(expected = RejectedExecutionException.class)
+    public void checkSubmitAfterShutdownNow() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        pool.submit("MyJob", noop());
+        pool.shutdownNow();
+        pool.submit("MyJob", noop());
+    }
+
+    /**
+     * Tests if awaitTermination times out while a lane is busy, and reports termination once it is not
+     */
+    @Test
+    public void expectAwaitTerminationBounded() throws InterruptedException {
+        final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.submit("MyJob", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assert.assertFalse(pool.isShutdown());
+        Assert.assertFalse(pool.awaitTermination(10, TimeUnit.MILLISECONDS));
+
+        Thread shutdown = new Thread(pool::shutdown);
+        shutdown.start();
+        Assert.assertFalse(pool.awaitTermination(50, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(pool.isShutdown());
+        Assert.assertFalse(pool.isTerminated());
+
+        release.countDown();
+        Assert.assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertTrue(pool.isTerminated());
+        shutdown.join();
+    }
+
+    /**
+     * Tests if lanes drain their jobs in parallel on shutdown, rather than one after the other
+     */
+    @Test
+    public void expectLanesDrainedInParallel() {
+        ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(4);
+        for (int i = 0; i < 4; i++) {
+            pool.submit(i, () -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        pool.shutdown();
+
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        Assert.assertTrue(pool.isTerminated());
+    }
+
+    /**
+     * Tests if the jobs held for a job id being moved are returned behind its jobs on the old lane
+     */
+    @Test
+    public void expectHeldJobsReturnedInOrder() throws InterruptedException {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rebalancing(1, TimeUnit.HOURS)
+                .build();
+        String[] jobIds = sameLaneJobIds(2);
+        blockLane(pool, jobIds[0]);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 200; i++) {
+            if (i == 100)
+                Assert.assertEquals(1, pool.rebalanceNow());
+            for (String jobId : jobIds) {
+                final String job = jobId + "@" + i;
+                pool.submit(jobId, () -> {
+                    executed.add(job);
+                });
+            }
+        }
+
+        Map<String, List<Runnable>> unrun = pool.shutdownNow();
+
+        Assert.assertTrue(executed.isEmpty());
+        for (String jobId : jobIds) {
+            List<Runnable> jobs = unrun.get(jobId);
+            Assert.assertEquals(200, jobs.size());
+            for (Runnable job : jobs) {
+                job.run();
+            }
+        }
+        for (int k = 0; k < jobIds.length; k++) {
+            for (int i = 0; i < 200; i++) {
+                Assert.assertEquals(jobIds[k] + "@" + i, executed.get(k * 200 + i));
+            }
+        }
+    }
+
+    private static CountDownLatch blockLane(ThreadPoolWithJobAffinityExecutor pool) throws InterruptedException {
+        return blockLane(pool, "Blocker");
+    }
+
+    /**
+     * Occupies the lane thread of the given job id until it is interrupted, which counts the returned latch down.
+     */
+    private static CountDownLatch blockLane(ThreadPoolWithJobAffinityExecutor pool, String jobId)
+            throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        pool.submit(jobId, () -> {
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        return interrupted;
+    }
+
+    private static String[] sameLaneJobIds(int count) {
+        String[] jobIds = new String[count];
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            String jobId = "MyJob" + i;
+            if (LaneRouters.modulo().lane(jobId, 2) == 0)
+                jobIds[found++] = jobId;
+        }
+        return jobIds;
+    }
+
+    /**
+     * @return a job that is not the same instance as any other
+     */
+    private static Runnable distinctJob() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static Runnable noop() {
+        return () -> {
+        };
+    }
+}
@@ -20,7 +20,7 @@ public class ThreadPoolSingleThreadedTest {
     public void expectThreadPoolSizeWorks() {
         final ThreadPoolWithJobAffinityExecutor pool = new ThreadPoolWithJobAffinityExecutor(10);
         Assert.assertEquals(pool.poolSize(), 10);
-        Assert.assertEquals(0, pool.map.size());
+        Assert.assertEquals(0, pool.activeLanes());
     }
 
     /**
@@ -67,7 +67,7 @@ public class ThreadPoolSingleThreadedTest {
             }
         });
 
-        Assert.assertEquals(1, pool.map.size());
+        Assert.assertEquals(1, pool.activeLanes());
 
         pool.shutdown();
 
@@ -76,7 +76,7 @@ public class ThreadPoolSingleThreadedTest {
             Assert.assertEquals(s, jobResult[0]);
         }
 
-        Assert.assertEquals(0, pool.map.size());
+        Assert.assertEquals(0, pool.activeLanes());
     }
 
     /**
@@ -183,11 +183,11 @@ public class ThreadPoolSingleThreadedTest {
             }
         });
 
-        Assert.assertEquals(5, pool.map.size());
+        Assert.assertEquals(5, pool.activeLanes());
 
         pool.shutdown();
 
-        Assert.assertEquals(0, pool.map.size());
+        Assert.assertEquals(0, pool.activeLanes());
 
         for (boolean s : status) {
             Assert.assertEquals(s, true);
@@ -263,7 +263,7 @@ public class ThreadPoolSingleThreadedTest {
             }
         });
 
-        Assert.assertEquals(1, pool.map.size());
+        Assert.assertEquals(1, pool.activeLanes());
 
         pool.shutdown();
 
@@ -0,0 +1,99 @@
+package com.coderevisited;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * User :  Suresh
+ * Date :  18/10/26
+ * Version : v1
+ */
+public class ThreadPoolWarmUpTest {
+
+    /**
+     * Tests if every lane thread is started by build, before any job is submitted
+     */
+    @Test
+    public void expectLanesStartedByBuild() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(4)
+                .prestartLanes(true)
+                .build();
+        Assert.assertEquals(4, pool.activeLanes());
+        for (LaneMetrics metrics : pool.metrics()) {
+            Assert.assertEquals(0, metrics.submitted());
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if the warm-up workload has run once build returns, without showing in the metrics of the pool
+     */
+    @Test
+    public void expectWarmUpOffTheMetrics() throws InterruptedException {
+        final AtomicInteger warmUpJobs = new AtomicInteger();
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .warmUp(1000, warmUpJobs::incrementAndGet)
+                .build();
+        Assert.assertEquals(1000, warmUpJobs.get());
+        Assert.assertEquals(0, pool.activeLanes());
+
+        final CountDownLatch done = new CountDownLatch(1);
+        pool.submit("MyJob", done::countDown);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        long submitted = 0;
+        for (LaneMetrics metrics : pool.metrics()) {
+            submitted += metrics.submitted();
+        }
+        Assert.assertEquals(1, submitted);
+    }
+
+    /**
+     * Tests if a warm-up filling lanes that reject jobs still completes
+     */
+    @Test
+    public void expectWarmUpWithRejectingLanes() {
+        ThreadPoolWithJobAffinityExecutor pool = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .laneCapacity(2)
+                .overflowPolicy(OverflowPolicy.REJECT)
+                .prestartLanes(true)
+                .warmUp(10000)
+                .build();
+        Assert.assertEquals(2, pool.activeLanes());
+        pool.shutdown();
+    }
+
+    /**
+     * Tests if the warm-up bypasses the rate limit, which would neither delay the build nor hand warm-up jobs over
+     */
+    @Test
+    public void expectWarmUpWithoutRateLimit() {
+        final AtomicInteger handedOff = new AtomicInteger();
+        long start = System.nanoTime();
+        ThreadPoolWithJobAffinityExecutor delaying = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(10, 1, RateLimitPolicy.delay())
+                .warmUp(10000)
+                .build();
+        ThreadPoolWithJobAffinityExecutor handingOff = ThreadPoolWithJobAffinityExecutor.builder(2)
+                .rateLimit(10, 1, RateLimitPolicy.handOff((jobId, job) -> handedOff.incrementAndGet()))
+                .warmUp(10000)
+                .build();
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        Assert.assertEquals(0, handedOff.get());
+        delaying.shutdown();
+        handingOff.shutdown();
+    }
+
+    /**
+     * Tests if the number of warm-up jobs is validated
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void checkNegativeWarmUp() {
+        ThreadPoolWithJobAffinityExecutor.builder(2).warmUp(-1).build();
+    }
+}